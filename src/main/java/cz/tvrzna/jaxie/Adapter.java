@@ -1,7 +1,10 @@
 package cz.tvrzna.jaxie;
 
 /**
- * The Interface Adapter.
+ * The Interface Adapter. Adapter of field is created for each value, unless it
+ * is marked as shared by <code>JaxieAdapter</code> annotation. Shared adapters
+ * and adapters registered by <code>Jaxie.withAdapter</code> are used by all
+ * threads, so they must be stateless or thread-safe.
  *
  * @author michalt
  * @param <T>
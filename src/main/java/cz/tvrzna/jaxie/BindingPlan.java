@@ -0,0 +1,232 @@
+package cz.tvrzna.jaxie;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cz.tvrzna.jaxie.annotations.JaxieElement;
+
+/**
+ * Binding plan of class, that holds all resolved fields and annotations. It is
+ * computed once per class and cached, so it is safe to be shared across all
+ * threads.
+ *
+ * @author michalt
+ */
+public class BindingPlan
+{
+	private static final ClassValue<BindingPlan> CACHE = new ClassValue<BindingPlan>()
+	{
+		@Override
+		protected BindingPlan computeValue(Class<?> type)
+		{
+			return new BindingPlan(type);
+		}
+	};
+
+	private final Class<?> clazz;
+	private final String rootName;
+	private final List<FieldBinding> fields;
+	private final List<FieldBinding> attributes;
+	private final List<FieldBinding> elements;
+	private final Map<String, FieldBinding> attributeTable;
+	private final Map<String, FieldBinding> elementTable;
+	private final Map<String, Map<String, FieldBinding>> wrapperTable;
+	private final Constructor<?> constructor;
+	private final JaxieMapper<Object> mapper;
+
+	/**
+	 * Instantiates a new binding plan.
+	 *
+	 * @param clazz
+	 *          the clazz
+	 */
+	private BindingPlan(Class<?> clazz)
+	{
+		this.clazz = clazz;
+
+		JaxieElement j = clazz.getAnnotation(JaxieElement.class);
+		rootName = j != null && !j.value().isEmpty() ? j.value() : "root";
+
+		mapper = JaxieMapper.find(clazz);
+
+		List<FieldBinding> lstFields = new ArrayList<>();
+		for (Field field : CommonUtils.getFields(clazz))
+		{
+			int index = mapper != null ? mapper.indexOf(field.getName()) : -1;
+			lstFields.add(new FieldBinding(field, index >= 0 ? FieldAccessor.of(field.getType(), mapper, index) : null, lstFields.size()));
+		}
+		fields = Collections.unmodifiableList(lstFields);
+
+		List<FieldBinding> lstAttributes = new ArrayList<>();
+		List<FieldBinding> lstElements = new ArrayList<>();
+		for (FieldBinding field : fields)
+		{
+			(field.isAttribute() ? lstAttributes : lstElements).add(field);
+		}
+		attributes = Collections.unmodifiableList(lstAttributes);
+		elements = Collections.unmodifiableList(lstElements);
+
+		Map<String, FieldBinding> mapAttributes = new HashMap<>();
+		Map<String, FieldBinding> mapElements = new HashMap<>();
+		Map<String, Map<String, FieldBinding>> mapWrappers = new HashMap<>();
+		for (FieldBinding field : fields)
+		{
+			if (field.isAttribute())
+			{
+				mapAttributes.putIfAbsent(field.getName(), field);
+			}
+			else if (field.getWrapper() == null)
+			{
+				mapElements.putIfAbsent(field.getName(), field);
+			}
+			else
+			{
+				mapWrappers.computeIfAbsent(field.getWrapper(), k -> new HashMap<>()).putIfAbsent(field.getName(), field);
+			}
+		}
+		attributeTable = mapAttributes;
+		elementTable = mapElements;
+		wrapperTable = mapWrappers;
+
+		Constructor<?> c = null;
+		if (mapper == null)
+		{
+			try
+			{
+				c = clazz.getDeclaredConstructor();
+			}
+			catch (NoSuchMethodException | SecurityException e)
+			{
+				c = null;
+			}
+		}
+		constructor = c;
+	}
+
+	/**
+	 * Gets the binding plan of class.
+	 *
+	 * @param clazz
+	 *          the clazz
+	 * @return the binding plan
+	 */
+	protected static BindingPlan of(Class<?> clazz)
+	{
+		return CACHE.get(clazz);
+	}
+
+	/**
+	 * Creates new instance of class using its default constructor.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @return the new instance
+	 * @throws Exception
+	 *           the exception
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T newInstance() throws Exception
+	{
+		if (mapper != null)
+		{
+			return (T) mapper.newInstance();
+		}
+		else if (constructor == null)
+		{
+			throw new NoSuchMethodException(clazz.getName().concat(".<init>()"));
+		}
+		return (T) constructor.newInstance();
+	}
+
+	/**
+	 * Gets the generated mapper of class.
+	 *
+	 * @return the mapper, or <code>null</code> if no mapper was generated
+	 */
+	protected JaxieMapper<Object> getMapper()
+	{
+		return mapper;
+	}
+
+	/**
+	 * Gets the name of root element.
+	 *
+	 * @return the root name
+	 */
+	protected String getRootName()
+	{
+		return rootName;
+	}
+
+	/**
+	 * Gets the list of all mapped fields.
+	 *
+	 * @return the fields
+	 */
+	protected List<FieldBinding> getFields()
+	{
+		return fields;
+	}
+
+	/**
+	 * Gets the list of fields mapped as attributes.
+	 *
+	 * @return the attributes
+	 */
+	protected List<FieldBinding> getAttributes()
+	{
+		return attributes;
+	}
+
+	/**
+	 * Gets the list of fields mapped as elements.
+	 *
+	 * @return the elements
+	 */
+	protected List<FieldBinding> getElements()
+	{
+		return elements;
+	}
+
+	/**
+	 * Gets the field mapped to attribute with defined name.
+	 *
+	 * @param name
+	 *          the name
+	 * @return the field binding, or <code>null</code> if attribute is not mapped
+	 */
+	protected FieldBinding getAttribute(String name)
+	{
+		return attributeTable.get(name);
+	}
+
+	/**
+	 * Gets the field mapped to element with defined name, that is not wrapped.
+	 *
+	 * @param name
+	 *          the name
+	 * @return the field binding, or <code>null</code> if element is not mapped
+	 */
+	protected FieldBinding getElement(String name)
+	{
+		return elementTable.get(name);
+	}
+
+	/**
+	 * Gets the fields wrapped in element with defined name, by names of their
+	 * elements.
+	 *
+	 * @param wrapper
+	 *          the wrapper
+	 * @return the wrapped fields, or <code>null</code> if element is not wrapper
+	 */
+	protected Map<String, FieldBinding> getWrapped(String wrapper)
+	{
+		return wrapperTable.get(wrapper);
+	}
+}
@@ -0,0 +1,388 @@
+package cz.tvrzna.jaxie;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer, that encodes characters directly into byte buffer and writes it into
+ * <code>OutputStream</code> in large blocks. UTF-8 is encoded without any
+ * <code>CharsetEncoder</code>, ASCII characters are copied in tight loop.
+ * Characters, that could not be encoded in charset, are written as character
+ * references, so <code>XmlWriter</code> checks, that they are not in names and
+ * CDATA sections. Buffer is borrowed from pool of current thread and returned,
+ * when writer is closed, so pool needs no locking.
+ *
+ * @author michalt
+ */
+class ByteWriter extends Writer
+{
+	private static final int BUFFER_SIZE = 32 * 1024;
+	private static final ThreadLocal<byte[]> POOL = new ThreadLocal<>();
+
+	private final OutputStream os;
+	private final boolean utf8;
+	private final int singleByteLimit;
+	private final Charset limitedCharset;
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars;
+	private byte[] buf;
+	private int pos = 0;
+	private char highSurrogate = 0;
+
+	/**
+	 * Instantiates a new byte writer.
+	 *
+	 * @param os
+	 *          the os
+	 * @param charset
+	 *          the charset
+	 */
+	ByteWriter(OutputStream os, Charset charset)
+	{
+		this.os = os;
+		this.utf8 = StandardCharsets.UTF_8.equals(charset);
+		this.limitedCharset = charset.name().startsWith("UTF-") ? null : charset;
+		if (StandardCharsets.ISO_8859_1.equals(charset))
+		{
+			singleByteLimit = 0x100;
+		}
+		else if (StandardCharsets.US_ASCII.equals(charset))
+		{
+			singleByteLimit = 0x80;
+		}
+		else
+		{
+			singleByteLimit = 0;
+		}
+		if (utf8 || singleByteLimit > 0)
+		{
+			encoder = null;
+			chars = null;
+		}
+		else
+		{
+			encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPORT);
+			chars = CharBuffer.allocate(BUFFER_SIZE / 4);
+		}
+		byte[] pooled = POOL.get();
+		POOL.remove();
+		buf = pooled != null ? pooled : new byte[BUFFER_SIZE];
+	}
+
+	/**
+	 * Gets the charset, that could not encode all characters.
+	 *
+	 * @return the charset, or <code>null</code> if charset is one of UTF
+	 *         charsets
+	 */
+	Charset getLimitedCharset()
+	{
+		return limitedCharset;
+	}
+
+	@Override
+	public void write(int c) throws IOException
+	{
+		if (c < 0x80 && encoder == null && highSurrogate == 0)
+		{
+			if (pos == buf.length)
+			{
+				flushBuffer();
+			}
+			buf[pos++] = (byte) c;
+			return;
+		}
+		writeChar((char) c);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException
+	{
+		int end = off + len;
+		int i = off;
+		while (i < end)
+		{
+			if (encoder == null && highSurrogate == 0)
+			{
+				int limit = Math.min(end, i + buf.length - pos);
+				while (i < limit && cbuf[i] < 0x80)
+				{
+					buf[pos++] = (byte) cbuf[i++];
+				}
+				if (pos == buf.length)
+				{
+					flushBuffer();
+				}
+				if (i == end || cbuf[i] < 0x80)
+				{
+					continue;
+				}
+			}
+			writeChar(cbuf[i++]);
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException
+	{
+		int end = off + len;
+		int i = off;
+		while (i < end)
+		{
+			if (encoder == null && highSurrogate == 0)
+			{
+				int limit = Math.min(end, i + buf.length - pos);
+				while (i < limit && str.charAt(i) < 0x80)
+				{
+					buf[pos++] = (byte) str.charAt(i++);
+				}
+				if (pos == buf.length)
+				{
+					flushBuffer();
+				}
+				if (i == end || str.charAt(i) < 0x80)
+				{
+					continue;
+				}
+			}
+			writeChar(str.charAt(i++));
+		}
+	}
+
+	/**
+	 * Writes one character, that is not handled by ASCII fast path.
+	 *
+	 * @param c
+	 *          the c
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void writeChar(char c) throws IOException
+	{
+		if (encoder != null)
+		{
+			if (!chars.hasRemaining())
+			{
+				encodeChars(false);
+			}
+			chars.put(c);
+		}
+		else if (highSurrogate != 0)
+		{
+			char high = highSurrogate;
+			highSurrogate = 0;
+			if (Character.isLowSurrogate(c))
+			{
+				writeCodePoint(Character.toCodePoint(high, c));
+			}
+			else
+			{
+				writeCodePoint('?');
+				writeChar(c);
+			}
+		}
+		else if (Character.isHighSurrogate(c))
+		{
+			highSurrogate = c;
+		}
+		else if (Character.isLowSurrogate(c))
+		{
+			writeCodePoint('?');
+		}
+		else
+		{
+			writeCodePoint(c);
+		}
+	}
+
+	/**
+	 * Writes one code point in UTF-8 or single byte charset.
+	 *
+	 * @param cp
+	 *          the code point
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void writeCodePoint(int cp) throws IOException
+	{
+		if (buf.length - pos < 4)
+		{
+			flushBuffer();
+		}
+		if (!utf8)
+		{
+			if (cp < singleByteLimit)
+			{
+				buf[pos++] = (byte) cp;
+			}
+			else
+			{
+				writeReference(cp);
+			}
+		}
+		else if (cp < 0x80)
+		{
+			buf[pos++] = (byte) cp;
+		}
+		else if (cp < 0x800)
+		{
+			buf[pos++] = (byte) (0xC0 | (cp >> 6));
+			buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+		}
+		else if (cp < 0x10000)
+		{
+			buf[pos++] = (byte) (0xE0 | (cp >> 12));
+			buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+			buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+		}
+		else
+		{
+			buf[pos++] = (byte) (0xF0 | (cp >> 18));
+			buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+			buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+			buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+		}
+	}
+
+	/**
+	 * Writes character reference of code point, that could not be encoded in
+	 * single byte charset.
+	 *
+	 * @param cp
+	 *          the code point
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void writeReference(int cp) throws IOException
+	{
+		String reference = "&#" + cp + ";";
+		if (buf.length - pos < reference.length())
+		{
+			flushBuffer();
+		}
+		for (int i = 0; i < reference.length(); i++)
+		{
+			buf[pos++] = (byte) reference.charAt(i);
+		}
+	}
+
+	/**
+	 * Encodes buffered characters by <code>CharsetEncoder</code>. Unpaired high
+	 * surrogate at end is kept in buffer, unless it is last character.
+	 *
+	 * @param endOfInput
+	 *          the end of input
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void encodeChars(boolean endOfInput) throws IOException
+	{
+		chars.flip();
+		ByteBuffer out = ByteBuffer.wrap(buf, pos, buf.length - pos);
+		while (true)
+		{
+			CoderResult result = encoder.encode(chars, out, endOfInput);
+			pos = out.position();
+			if (result.isUnderflow())
+			{
+				break;
+			}
+			else if (result.isOverflow())
+			{
+				flushBuffer();
+				out = ByteBuffer.wrap(buf);
+			}
+			else
+			{
+				int cp = Character.codePointAt(chars, 0);
+				chars.position(chars.position() + result.length());
+				CharBuffer reference = CharBuffer.wrap("&#" + cp + ";");
+				while (encoder.encode(reference, out, endOfInput).isOverflow())
+				{
+					pos = out.position();
+					flushBuffer();
+					out = ByteBuffer.wrap(buf);
+				}
+				pos = out.position();
+			}
+		}
+		if (endOfInput)
+		{
+			while (encoder.flush(out).isOverflow())
+			{
+				pos = out.position();
+				flushBuffer();
+				out = ByteBuffer.wrap(buf);
+			}
+			pos = out.position();
+			encoder.reset();
+		}
+		chars.compact();
+	}
+
+	/**
+	 * Writes content of byte buffer into stream.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void flushBuffer() throws IOException
+	{
+		if (pos > 0)
+		{
+			os.write(buf, 0, pos);
+			pos = 0;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		if (buf == null)
+		{
+			return;
+		}
+		if (encoder != null)
+		{
+			encodeChars(false);
+		}
+		flushBuffer();
+		os.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (buf == null)
+		{
+			return;
+		}
+		try
+		{
+			if (encoder != null)
+			{
+				encodeChars(true);
+			}
+			else if (highSurrogate != 0)
+			{
+				highSurrogate = 0;
+				writeCodePoint('?');
+			}
+			flushBuffer();
+			os.close();
+		}
+		finally
+		{
+			POOL.set(buf);
+			buf = null;
+		}
+	}
+}
@@ -0,0 +1,756 @@
+package cz.tvrzna.jaxie;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * Lexer, that scans encoded bytes of document directly. All syntax of XML is
+ * ASCII, so it is matched on bytes without any decoding, as long as encoding
+ * of document is ASCII compatible, like UTF-8 or any single-byte encoding.
+ * Names and values, that contain only ASCII bytes, are copied into strings
+ * without decoding, other values are decoded by encoding of document.
+ *
+ * @author michalt
+ */
+class ByteXmlLexer extends XmlLexer
+{
+	private static final byte[] XML_DECLARATION = "<?xml".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ENCODING = "encoding".getBytes(StandardCharsets.US_ASCII);
+	private static final int HEADER_LIMIT = 1024;
+	/** Maximal size of memory-mapped window. */
+	static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+	private final Charset charset;
+	private final FileChannel channel;
+	private final int windowSize;
+	private final long size;
+	private ByteBuffer buf;
+	private long windowStart = 0;
+	private int pos;
+	private int limit;
+	private int mark = -1;
+	private boolean ascii;
+	private byte[] copy;
+
+	/**
+	 * Instantiates a new lexer.
+	 *
+	 * @param buf
+	 *          the buffer, that is indexed from <code>0</code>
+	 * @param pos
+	 *          the starting position
+	 * @param charset
+	 *          the charset
+	 * @param channel
+	 *          the file channel, whose next windows are mapped, when buffer is
+	 *          read, or <code>null</code> if buffer contains whole document
+	 * @param windowSize
+	 *          the size of mapped window
+	 * @param size
+	 *          the size of whole document
+	 */
+	private ByteXmlLexer(ByteBuffer buf, int pos, Charset charset, FileChannel channel, int windowSize, long size)
+	{
+		this.buf = buf;
+		this.pos = pos;
+		this.limit = buf.limit();
+		this.charset = charset;
+		this.channel = channel;
+		this.windowSize = windowSize;
+		this.size = size;
+	}
+
+	/**
+	 * Creates lexer over remaining bytes of buffer. Encoding is detected from
+	 * byte order mark or from <code>&lt;?xml ?&gt;</code> header, UTF-8 is used
+	 * by default. Document in encoding, that is not ASCII compatible, is decoded
+	 * at once and read by <code>CharXmlLexer</code>.
+	 *
+	 * @param buffer
+	 *          the buffer
+	 * @return the xml lexer
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	static XmlLexer of(ByteBuffer buffer) throws IOException
+	{
+		ByteBuffer buf = buffer.slice();
+		int bom = getBomLength(buf);
+		Charset charset = detectCharset(buf);
+		if (!isAsciiCompatible(charset))
+		{
+			buf.position(bom);
+			return new CharXmlLexer(charset.decode(buf).toString());
+		}
+		return new ByteXmlLexer(buf, bom, charset, null, 0, buf.limit());
+	}
+
+	/**
+	 * Creates lexer over part of document, whose charset is already known and is
+	 * compatible with ASCII.
+	 *
+	 * @param buffer
+	 *          the buffer
+	 * @param charset
+	 *          the charset
+	 * @return the xml lexer
+	 */
+	static XmlLexer of(ByteBuffer buffer, Charset charset)
+	{
+		ByteBuffer buf = buffer.slice();
+		return new ByteXmlLexer(buf, 0, charset, null, 0, buf.limit());
+	}
+
+	/**
+	 * Creates lexer over file, that is read directly from memory-mapped windows
+	 * of defined size. Window is never larger than 2 GB, so larger files are
+	 * remapped as they are read. Encoding is detected the same way as by
+	 * <code>of(ByteBuffer)</code>. Channel is not closed.
+	 *
+	 * @param channel
+	 *          the channel
+	 * @param windowSize
+	 *          the window size
+	 * @return the xml lexer
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	static XmlLexer of(FileChannel channel, int windowSize) throws IOException
+	{
+		ByteBuffer buf = channel.map(MapMode.READ_ONLY, 0, Math.min(channel.size(), windowSize));
+		Charset charset = detectCharset(buf);
+		if (!isAsciiCompatible(charset))
+		{
+			return new CharXmlLexer(Channels.newReader(channel.position(0), charset.newDecoder(), -1));
+		}
+		return new ByteXmlLexer(buf, getBomLength(buf), charset, channel, windowSize, channel.size());
+	}
+
+	/**
+	 * Creates reader of input stream, whose charset is detected the same way as
+	 * by <code>of</code>. Only bytes, that are needed to detect charset, are
+	 * read ahead, so it does not wait for more data of stream, that is not
+	 * closed.
+	 *
+	 * @param is
+	 *          the input stream
+	 * @return the reader
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	static Reader newReader(InputStream is) throws IOException
+	{
+		BufferedInputStream in = new BufferedInputStream(is);
+		in.mark(HEADER_LIMIT);
+		byte[] header = new byte[HEADER_LIMIT];
+		int len = 0;
+		int n;
+		while (!isHeaderRead(header, len) && (n = in.read(header, len, HEADER_LIMIT - len)) > 0)
+		{
+			len += n;
+		}
+		in.reset();
+		return new InputStreamReader(in, detectCharset(ByteBuffer.wrap(header, 0, len).slice()));
+	}
+
+	/**
+	 * Checks if beginning of document is long enough to detect its charset. It
+	 * is, when it does not start with XML declaration, or when whole XML
+	 * declaration has been read.
+	 *
+	 * @param header
+	 *          the header
+	 * @param len
+	 *          the length of read part of header
+	 * @return true, if is header read
+	 */
+	private static boolean isHeaderRead(byte[] header, int len)
+	{
+		if (len == HEADER_LIMIT)
+		{
+			return true;
+		}
+		else if (len < 2)
+		{
+			return false;
+		}
+		else if ((header[0] & 0xFF) == 0xEF)
+		{
+			return len >= 3;
+		}
+		for (int i = 0; i < XML_DECLARATION.length; i++)
+		{
+			if (i == len)
+			{
+				return false;
+			}
+			else if (header[i] != XML_DECLARATION[i])
+			{
+				return true;
+			}
+		}
+		for (int i = XML_DECLARATION.length; i < len; i++)
+		{
+			if (header[i] == '>')
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Detects charset of document from its beginning. Byte order mark takes
+	 * precedence over encoding declared in header.
+	 *
+	 * @param buf
+	 *          the buffer, that is indexed from <code>0</code>
+	 * @return the charset
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	static Charset detectCharset(ByteBuffer buf) throws IOException
+	{
+		int b0 = buf.limit() > 0 ? buf.get(0) & 0xFF : -1;
+		int b1 = buf.limit() > 1 ? buf.get(1) & 0xFF : -1;
+		if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0x00 && b1 == '<'))
+		{
+			return StandardCharsets.UTF_16BE;
+		}
+		else if ((b0 == 0xFF && b1 == 0xFE) || (b0 == '<' && b1 == 0x00))
+		{
+			return StandardCharsets.UTF_16LE;
+		}
+
+		int bom = getBomLength(buf);
+		if (bom > 0 || !startsWith(buf, bom, XML_DECLARATION))
+		{
+			return StandardCharsets.UTF_8;
+		}
+		int end = Math.min(buf.limit(), bom + HEADER_LIMIT);
+		for (int i = bom + XML_DECLARATION.length; i < end && buf.get(i) != '>'; i++)
+		{
+			if (startsWith(buf, i, ENCODING))
+			{
+				return getCharset(buf, i + ENCODING.length, end);
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Gets the length of UTF-8 byte order mark.
+	 *
+	 * @param buf
+	 *          the buffer
+	 * @return the length of byte order mark
+	 */
+	private static int getBomLength(ByteBuffer buf)
+	{
+		if (buf.limit() >= 3 && (buf.get(0) & 0xFF) == 0xEF && (buf.get(1) & 0xFF) == 0xBB && (buf.get(2) & 0xFF) == 0xBF)
+		{
+			return 3;
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the charset from value of <code>encoding</code> pseudo-attribute.
+	 *
+	 * @param buf
+	 *          the buffer
+	 * @param i
+	 *          the index after name of pseudo-attribute
+	 * @param end
+	 *          the end of header
+	 * @return the charset
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private static Charset getCharset(ByteBuffer buf, int i, int end) throws IOException
+	{
+		while (i < end && (isWhitespace(buf.get(i)) || buf.get(i) == '='))
+		{
+			i++;
+		}
+		if (i >= end || (buf.get(i) != '"' && buf.get(i) != '\''))
+		{
+			throw new IOException("Invalid encoding in XML declaration.");
+		}
+		byte quote = buf.get(i++);
+		StringBuilder sb = new StringBuilder();
+		while (i < end && buf.get(i) != quote)
+		{
+			sb.append((char) buf.get(i++));
+		}
+		try
+		{
+			return Charset.forName(sb.toString());
+		}
+		catch (IllegalCharsetNameException | UnsupportedCharsetException e)
+		{
+			throw new UnsupportedEncodingException(sb.toString());
+		}
+	}
+
+	/**
+	 * Checks if charset encodes ASCII characters as single ASCII bytes, that
+	 * never occur inside encoding of other characters.
+	 *
+	 * @param charset
+	 *          the charset
+	 * @return true, if is ascii compatible
+	 */
+	static boolean isAsciiCompatible(Charset charset)
+	{
+		if (StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset) || StandardCharsets.ISO_8859_1.equals(charset))
+		{
+			return true;
+		}
+		else if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f)
+		{
+			return false;
+		}
+		String syntax = "<>/=?!-[] \t\r\n\"'abzAZ09:_.";
+		return syntax.equals(new String(syntax.getBytes(charset), StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Checks if buffer contains sequence at index.
+	 *
+	 * @param buf
+	 *          the buffer
+	 * @param i
+	 *          the index
+	 * @param seq
+	 *          the seq
+	 * @return true, if successful
+	 */
+	private static boolean startsWith(ByteBuffer buf, int i, byte[] seq)
+	{
+		if (buf.limit() - i < seq.length)
+		{
+			return false;
+		}
+		for (int j = 0; j < seq.length; j++)
+		{
+			if (buf.get(i + j) != seq[j])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Maps next window of file into buffer. Bytes from mark, or from current
+	 * position if there is no mark, are kept in the new window.
+	 *
+	 * @return true, if any byte was added
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private boolean fill() throws IOException
+	{
+		if (channel == null || windowStart + limit >= size)
+		{
+			return false;
+		}
+		int keep = mark >= 0 ? mark : pos;
+		long start = windowStart + keep;
+		long length = Math.min(Math.min(Math.max(windowSize, 2l * (limit - keep)), Integer.MAX_VALUE), size - start);
+		if (length <= limit - keep)
+		{
+			throw new IOException("Token is larger than mapped window.");
+		}
+
+		buf = channel.map(MapMode.READ_ONLY, start, length);
+		windowStart = start;
+		limit = (int) length;
+		pos -= keep;
+		if (mark >= 0)
+		{
+			mark -= keep;
+		}
+		return true;
+	}
+
+	/**
+	 * Ensures, that at least <code>n</code> bytes are available from current
+	 * position.
+	 *
+	 * @param n
+	 *          the n
+	 * @return true, if bytes are available
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private boolean ensure(int n) throws IOException
+	{
+		while (limit - pos < n)
+		{
+			if (!fill())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	int peek() throws IOException
+	{
+		if (pos < limit || ensure(1))
+		{
+			return buf.get(pos) & 0xFF;
+		}
+		return -1;
+	}
+
+	@Override
+	int peek(int offset) throws IOException
+	{
+		if (ensure(offset + 1))
+		{
+			return buf.get(pos + offset) & 0xFF;
+		}
+		return -1;
+	}
+
+	@Override
+	void skip(int n)
+	{
+		pos += n;
+	}
+
+	@Override
+	boolean startsWith(char[] seq) throws IOException
+	{
+		if (!ensure(seq.length))
+		{
+			return false;
+		}
+		for (int i = 0; i < seq.length; i++)
+		{
+			if (buf.get(pos + i) != seq[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	void skipWhitespace() throws IOException
+	{
+		while (pos < limit || ensure(1))
+		{
+			if (!isWhitespace(buf.get(pos)))
+			{
+				return;
+			}
+			pos++;
+		}
+	}
+
+	@Override
+	String readName() throws IOException
+	{
+		mark = pos;
+		ascii = true;
+		while (pos < limit || ensure(1))
+		{
+			byte b = buf.get(pos);
+			if (isNameEnd(b))
+			{
+				break;
+			}
+			ascii &= b >= 0;
+			pos++;
+		}
+		String result = ascii ? symbols.lookup(buf, mark, pos - mark) : string(mark, pos, false).intern();
+		mark = -1;
+		return result;
+	}
+
+	@Override
+	String readText() throws IOException
+	{
+		StringBuilder sb = null;
+		mark = pos;
+		ascii = true;
+		while (true)
+		{
+			pos = indexOf((byte) '<');
+			if (pos >= limit)
+			{
+				if (!fill())
+				{
+					break;
+				}
+				continue;
+			}
+			else if (startsWith(CDATA_START))
+			{
+				skipPast(CDATA_END);
+			}
+			else if (startsWith(COMMENT_START))
+			{
+				if (sb == null)
+				{
+					sb = new StringBuilder();
+				}
+				sb.append(release());
+				skipPast(COMMENT_END);
+				mark = pos;
+				ascii = true;
+			}
+			else
+			{
+				break;
+			}
+		}
+		if (sb == null)
+		{
+			return releaseValue();
+		}
+		return sb.append(release()).toString();
+	}
+
+	@Override
+	void skipText() throws IOException
+	{
+		while (true)
+		{
+			pos = indexOf((byte) '<');
+			if (pos >= limit)
+			{
+				if (!fill())
+				{
+					return;
+				}
+			}
+			else if (startsWith(CDATA_START))
+			{
+				skipPast(CDATA_END);
+			}
+			else if (startsWith(COMMENT_START))
+			{
+				skipPast(COMMENT_END);
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+
+	@Override
+	String readQuoted(char quote) throws IOException
+	{
+		mark = pos;
+		ascii = true;
+		while (true)
+		{
+			pos = indexOf((byte) quote);
+			if (pos < limit)
+			{
+				String result = releaseValue();
+				pos++;
+				return result;
+			}
+			else if (!fill())
+			{
+				mark = -1;
+				throw new IOException("Unexpected end of document, missing " + quote + ".");
+			}
+		}
+	}
+
+	@Override
+	String readUnquoted() throws IOException
+	{
+		mark = pos;
+		ascii = true;
+		while (pos < limit || ensure(1))
+		{
+			byte b = buf.get(pos);
+			if (isWhitespace(b) || b == '>' || b == '/')
+			{
+				break;
+			}
+			ascii &= b >= 0;
+			pos++;
+		}
+		return releaseValue();
+	}
+
+	@Override
+	void skipPast(char[] end) throws IOException
+	{
+		pos++;
+		while (true)
+		{
+			pos = indexOf((byte) end[0]);
+			if (pos >= limit)
+			{
+				if (!fill())
+				{
+					throw new IOException("Unexpected end of document, missing " + new String(end) + ".");
+				}
+				continue;
+			}
+			else if (startsWith(end))
+			{
+				pos += end.length;
+				return;
+			}
+			pos++;
+		}
+	}
+
+	@Override
+	void skipDeclaration() throws IOException
+	{
+		int brackets = 0;
+		while (pos < limit || ensure(1))
+		{
+			byte b = buf.get(pos++);
+			if (b == '[')
+			{
+				brackets++;
+			}
+			else if (b == ']')
+			{
+				brackets--;
+			}
+			else if (b == '>' && brackets <= 0)
+			{
+				return;
+			}
+		}
+		throw new IOException("Unexpected end of document in declaration.");
+	}
+
+	/**
+	 * Finds byte from current position. Non-ASCII bytes found on the way are
+	 * recorded, so the following <code>string</code> knows if decoding is
+	 * needed.
+	 *
+	 * @param b
+	 *          the b
+	 * @return the index, or <code>limit</code> if byte is not in buffer
+	 */
+	private int indexOf(byte b)
+	{
+		for (int i = pos; i < limit; i++)
+		{
+			byte c = buf.get(i);
+			if (c == b)
+			{
+				return i;
+			}
+			ascii &= c >= 0;
+		}
+		return limit;
+	}
+
+	/**
+	 * Creates string from bytes between mark and current position and releases
+	 * mark. Bytes of buffer, that is not backed by array, are copied into
+	 * scratch array of lexer.
+	 *
+	 * @return the string
+	 */
+	private String release()
+	{
+		String result;
+		if (buf.hasArray())
+		{
+			result = string(mark, pos, ascii);
+		}
+		else
+		{
+			if (copy == null || copy.length < pos - mark)
+			{
+				copy = new byte[Math.max(pos - mark, 256)];
+			}
+			result = decode(mark, pos, ascii, copy);
+		}
+		mark = -1;
+		return result;
+	}
+
+	/**
+	 * Creates value from bytes between mark and current position and releases
+	 * mark. In lazy mode only range of value is recorded and <code>null</code>
+	 * is returned.
+	 *
+	 * @return the string, or <code>null</code> in lazy mode
+	 */
+	private String releaseValue()
+	{
+		if (lazy)
+		{
+			defer(mark, pos, ascii);
+			mark = -1;
+			return null;
+		}
+		return release();
+	}
+
+	/**
+	 * Creates string from buffer between indexes. It could be called by lazy
+	 * texts from any thread, so bytes of buffer, that is not backed by array,
+	 * are copied into local array.
+	 */
+	@Override
+	String string(int start, int end, boolean ascii)
+	{
+		if (buf.hasArray())
+		{
+			return new String(buf.array(), buf.arrayOffset() + start, end - start, ascii ? StandardCharsets.ISO_8859_1 : charset);
+		}
+		return decode(start, end, ascii, new byte[end - start]);
+	}
+
+	/**
+	 * Decodes bytes between indexes of buffer, that is not backed by array,
+	 * through copy in defined array.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @param ascii
+	 *          true, if range contains only ASCII characters
+	 * @param bytes
+	 *          the array, that is large enough for range
+	 * @return the string
+	 */
+	private String decode(int start, int end, boolean ascii, byte[] bytes)
+	{
+		ByteBuffer dup = buf.duplicate();
+		dup.position(start);
+		dup.get(bytes, 0, end - start);
+		return new String(bytes, 0, end - start, ascii ? StandardCharsets.ISO_8859_1 : charset);
+	}
+
+	@Override
+	boolean isRetained()
+	{
+		return windowStart == 0 && limit == size;
+	}
+}
@@ -0,0 +1,438 @@
+package cz.tvrzna.jaxie;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Lexer over internal <code>char[]</code> buffer, that is filled from
+ * <code>Reader</code>. Part of buffer, that belongs to token being read, is
+ * kept during refill, so tokens could be longer than buffer.
+ *
+ * @author michalt
+ */
+class CharXmlLexer extends XmlLexer
+{
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_EMPTY_READS = 1000;
+
+	private final Reader reader;
+	private char[] buf;
+	private int pos = 0;
+	private int limit;
+	private int mark = -1;
+
+	/**
+	 * Instantiates a new lexer over whole content.
+	 *
+	 * @param content
+	 *          the content
+	 */
+	CharXmlLexer(String content)
+	{
+		reader = null;
+		buf = content.toCharArray();
+		limit = buf.length;
+	}
+
+	/**
+	 * Instantiates a new lexer over part of characters, that are shared and
+	 * never modified.
+	 *
+	 * @param buf
+	 *          the buffer
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 */
+	CharXmlLexer(char[] buf, int start, int end)
+	{
+		reader = null;
+		this.buf = buf;
+		pos = start;
+		limit = end;
+	}
+
+	/**
+	 * Instantiates a new lexer, that reads reader.
+	 *
+	 * @param reader
+	 *          the reader
+	 */
+	CharXmlLexer(Reader reader)
+	{
+		this.reader = reader;
+		buf = new char[BUFFER_SIZE];
+		limit = 0;
+	}
+
+	/**
+	 * Reads more characters into buffer. Characters from mark, or from current
+	 * position if there is no mark, are kept.
+	 *
+	 * @return true, if any character was read
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private boolean fill() throws IOException
+	{
+		if (reader == null)
+		{
+			return false;
+		}
+		int keep = mark >= 0 ? mark : pos;
+		if (keep > 0)
+		{
+			System.arraycopy(buf, keep, buf, 0, limit - keep);
+			limit -= keep;
+			pos -= keep;
+			if (mark >= 0)
+			{
+				mark -= keep;
+			}
+		}
+		if (limit == buf.length)
+		{
+			buf = Arrays.copyOf(buf, buf.length * 2);
+		}
+		int n;
+		int emptyReads = 0;
+		while ((n = reader.read(buf, limit, buf.length - limit)) == 0)
+		{
+			// Reader should block until any character is available, misbehaving one
+			// is given a bounded number of retries
+			if (++emptyReads == MAX_EMPTY_READS)
+			{
+				throw new IOException("Reader has returned no characters " + MAX_EMPTY_READS + " times.");
+			}
+			Thread.yield();
+		}
+		if (n < 0)
+		{
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+
+	/**
+	 * Ensures, that at least <code>n</code> characters are available from
+	 * current position.
+	 *
+	 * @param n
+	 *          the n
+	 * @return true, if characters are available
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private boolean ensure(int n) throws IOException
+	{
+		while (limit - pos < n)
+		{
+			if (!fill())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	int peek() throws IOException
+	{
+		if (pos < limit || ensure(1))
+		{
+			return buf[pos];
+		}
+		return -1;
+	}
+
+	@Override
+	int peek(int offset) throws IOException
+	{
+		if (ensure(offset + 1))
+		{
+			return buf[pos + offset];
+		}
+		return -1;
+	}
+
+	@Override
+	void skip(int n)
+	{
+		pos += n;
+	}
+
+	@Override
+	boolean startsWith(char[] seq) throws IOException
+	{
+		for (int i = 0; i < seq.length; i++)
+		{
+			// Reads only while characters match, so it never waits for characters,
+			// that are not needed
+			if (!ensure(i + 1) || buf[pos + i] != seq[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	void skipWhitespace() throws IOException
+	{
+		while (pos < limit || ensure(1))
+		{
+			if (!isWhitespace(buf[pos]))
+			{
+				return;
+			}
+			pos++;
+		}
+	}
+
+	@Override
+	String readName() throws IOException
+	{
+		mark = pos;
+		while (pos < limit || ensure(1))
+		{
+			if (isNameEnd(buf[pos]))
+			{
+				break;
+			}
+			pos++;
+		}
+		String result = symbols.lookup(buf, mark, pos - mark);
+		mark = -1;
+		return result;
+	}
+
+	@Override
+	String readText() throws IOException
+	{
+		StringBuilder sb = null;
+		mark = pos;
+		while (true)
+		{
+			int i = indexOf('<');
+			if (i < 0)
+			{
+				pos = limit;
+				if (!fill())
+				{
+					break;
+				}
+				continue;
+			}
+			pos = i;
+			if (startsWith(CDATA_START))
+			{
+				skipPast(CDATA_END);
+			}
+			else if (startsWith(COMMENT_START))
+			{
+				if (sb == null)
+				{
+					sb = new StringBuilder();
+				}
+				sb.append(buf, mark, pos - mark);
+				mark = -1;
+				skipPast(COMMENT_END);
+				mark = pos;
+			}
+			else
+			{
+				break;
+			}
+		}
+		if (sb == null)
+		{
+			return releaseValue();
+		}
+		sb.append(buf, mark, pos - mark);
+		mark = -1;
+		return sb.toString();
+	}
+
+	@Override
+	void skipText() throws IOException
+	{
+		while (true)
+		{
+			int i = indexOf('<');
+			if (i < 0)
+			{
+				pos = limit;
+				if (!fill())
+				{
+					return;
+				}
+				continue;
+			}
+			pos = i;
+			if (startsWith(CDATA_START))
+			{
+				skipPast(CDATA_END);
+			}
+			else if (startsWith(COMMENT_START))
+			{
+				skipPast(COMMENT_END);
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+
+	@Override
+	String readQuoted(char quote) throws IOException
+	{
+		mark = pos;
+		while (true)
+		{
+			int i = indexOf(quote);
+			if (i >= 0)
+			{
+				pos = i;
+				String result = releaseValue();
+				pos++;
+				return result;
+			}
+			pos = limit;
+			if (!fill())
+			{
+				mark = -1;
+				throw new IOException("Unexpected end of document, missing " + quote + ".");
+			}
+		}
+	}
+
+	@Override
+	String readUnquoted() throws IOException
+	{
+		mark = pos;
+		while (pos < limit || ensure(1))
+		{
+			char c = buf[pos];
+			if (isWhitespace(c) || c == '>' || c == '/')
+			{
+				break;
+			}
+			pos++;
+		}
+		return releaseValue();
+	}
+
+	@Override
+	void skipPast(char[] end) throws IOException
+	{
+		pos++;
+		while (true)
+		{
+			int i = indexOf(end[0]);
+			if (i < 0)
+			{
+				pos = limit;
+				if (!fill())
+				{
+					throw new IOException("Unexpected end of document, missing " + new String(end) + ".");
+				}
+				continue;
+			}
+			pos = i;
+			if (startsWith(end))
+			{
+				pos += end.length;
+				return;
+			}
+			pos++;
+		}
+	}
+
+	@Override
+	void skipDeclaration() throws IOException
+	{
+		int brackets = 0;
+		while (pos < limit || ensure(1))
+		{
+			char c = buf[pos++];
+			if (c == '[')
+			{
+				brackets++;
+			}
+			else if (c == ']')
+			{
+				brackets--;
+			}
+			else if (c == '>' && brackets <= 0)
+			{
+				return;
+			}
+		}
+		throw new IOException("Unexpected end of document in declaration.");
+	}
+
+	/**
+	 * Finds character in buffer from current position.
+	 *
+	 * @param c
+	 *          the c
+	 * @return the index in buffer, or <code>-1</code> if character is not in
+	 *         buffer
+	 */
+	private int indexOf(char c)
+	{
+		for (int i = pos; i < limit; i++)
+		{
+			if (buf[i] == c)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Creates string from mark to current position and releases mark.
+	 *
+	 * @return the string
+	 */
+	private String release()
+	{
+		String result = new String(buf, mark, pos - mark);
+		mark = -1;
+		return result;
+	}
+
+	/**
+	 * Creates value from mark to current position and releases mark. In lazy
+	 * mode only range of value is recorded and <code>null</code> is returned.
+	 *
+	 * @return the string, or <code>null</code> in lazy mode
+	 */
+	private String releaseValue()
+	{
+		if (lazy)
+		{
+			defer(mark, pos, true);
+			mark = -1;
+			return null;
+		}
+		return release();
+	}
+
+	@Override
+	String string(int start, int end, boolean ascii)
+	{
+		return new String(buf, start, end - start);
+	}
+
+	@Override
+	boolean isRetained()
+	{
+		return reader == null;
+	}
+}
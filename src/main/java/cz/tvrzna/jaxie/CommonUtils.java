@@ -1,15 +1,22 @@
 package cz.tvrzna.jaxie;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * The Class CommonUtils.
@@ -21,17 +28,18 @@ public class CommonUtils
 	protected static final String DATE_FORMAT_XML = "yyyy-MM-dd HH:mm:ss";
 	protected static final List<Class<?>> SIMPLE_CLASSES = Arrays.asList(String.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class,
 			Number.class, Float.class, Double.class, Date.class, BigDecimal.class, BigInteger.class, boolean.class, byte.class, char.class, short.class, int.class, long.class,
-			float.class, double.class);
+			float.class, double.class, Instant.class, LocalDate.class, LocalDateTime.class, OffsetDateTime.class, ZonedDateTime.class);
 	protected static final List<Class<?>> PRIMITIVE_CLASSES = Arrays.asList(boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class);
 
-	private static final Map<String, String> MAP_XML_ESCAPE = new HashMap<>();
+	private static final String[] XML_ESCAPE = new String['>' + 1];
 
 	static
 	{
-		MAP_XML_ESCAPE.put("<", "&lt;");
-		MAP_XML_ESCAPE.put(">", "&gt;");
-		MAP_XML_ESCAPE.put("'", "&apos;");
-		MAP_XML_ESCAPE.put("\"", "&quot;");
+		XML_ESCAPE['&'] = "&amp;";
+		XML_ESCAPE['<'] = "&lt;";
+		XML_ESCAPE['>'] = "&gt;";
+		XML_ESCAPE['\''] = "&apos;";
+		XML_ESCAPE['"'] = "&quot;";
 	}
 
 	/**
@@ -51,17 +59,16 @@ public class CommonUtils
 	protected static List<Field> getFields(Class<?> clazz)
 	{
 		List<Field> result = new ArrayList<>();
-		List<String> lstFieldNames = new ArrayList<>();
+		Set<String> setFieldNames = new HashSet<>();
 
 		Class<?> current = clazz;
 		while (current.getSuperclass() != null && !SIMPLE_CLASSES.contains(current))
 		{
 			for (Field field : current.getDeclaredFields())
 			{
-				if (!lstFieldNames.contains(field.getName()) && !Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers()))
+				if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers()) && setFieldNames.add(field.getName()))
 				{
 					result.add(field);
-					lstFieldNames.add(field.getName());
 				}
 			}
 			current = current.getSuperclass();
@@ -253,13 +260,79 @@ public class CommonUtils
 	 */
 	public static String normalizeText(String str)
 	{
-		String result = str;
-		result = result.replace("&", "&amp;");
-		for (Map.Entry<String, String> entry : CommonUtils.MAP_XML_ESCAPE.entrySet())
+		int i = indexOfEscaped(str, 0);
+		if (i < 0)
 		{
-			result = result.replace(entry.getKey(), entry.getValue());
+			return str;
+		}
+		StringBuilder sb = new StringBuilder(str.length() + 16);
+		int start = 0;
+		for (; i < str.length(); i++)
+		{
+			char c = str.charAt(i);
+			if (c < XML_ESCAPE.length && XML_ESCAPE[c] != null)
+			{
+				sb.append(str, start, i).append(XML_ESCAPE[c]);
+				start = i + 1;
+			}
+		}
+		return sb.append(str, start, str.length()).toString();
+	}
+
+	/**
+	 * Writes escaped text into writer in single pass. Runs of characters, that
+	 * do not need to be escaped, are written at once, so text without any
+	 * special character is written by single call.
+	 *
+	 * @param w
+	 *          the w
+	 * @param str
+	 *          the str
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	protected static void writeEscaped(Writer w, String str) throws IOException
+	{
+		int start = 0;
+		for (int i = indexOfEscaped(str, 0); i >= 0; i = indexOfEscaped(str, start))
+		{
+			if (i > start)
+			{
+				w.write(str, start, i - start);
+			}
+			w.write(XML_ESCAPE[str.charAt(i)]);
+			start = i + 1;
+		}
+		if (start == 0)
+		{
+			w.write(str);
+		}
+		else if (start < str.length())
+		{
+			w.write(str, start, str.length() - start);
 		}
-		return result;
+	}
+
+	/**
+	 * Finds first character, that needs to be escaped.
+	 *
+	 * @param str
+	 *          the str
+	 * @param from
+	 *          the from
+	 * @return the index of character, or <code>-1</code> if there is none
+	 */
+	private static int indexOfEscaped(String str, int from)
+	{
+		for (int i = from; i < str.length(); i++)
+		{
+			char c = str.charAt(i);
+			if (c < XML_ESCAPE.length && XML_ESCAPE[c] != null)
+			{
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	/**
@@ -273,4 +346,20 @@ public class CommonUtils
 	{
 		return value != null && value.startsWith("<![CDATA[") && value.endsWith("]]>");
 	}
+
+	/**
+	 * Gets the text content of value, that is unwrapped from CDATA.
+	 *
+	 * @param value
+	 *          the value
+	 * @return the text content
+	 */
+	protected static String getTextContent(String value)
+	{
+		if (isCDATA(value))
+		{
+			return value.substring("<![CDATA[".length(), value.lastIndexOf("]]>"));
+		}
+		return value;
+	}
 }
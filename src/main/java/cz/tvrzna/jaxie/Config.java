@@ -1,18 +1,63 @@
 package cz.tvrzna.jaxie;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * This class is carrier of all configuration applicable.
+ * This class is carrier of all configuration applicable. Config must not be
+ * changed, while it is used, because it is shared by all threads, that use the
+ * same <code>Jaxie</code>.
  *
  * @author michalt
  */
 public class Config
 {
+	/** Default maximal depth of nested elements. */
+	public static final int DEFAULT_MAX_DEPTH = 512;
+
+	/** Default minimal size of collection, that is bound in parallel. */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 10000;
+
+	private static final Adapter<?> NO_ADAPTER = new Adapter<Object>()
+	{
+		@Override
+		public Object deserialize(String text)
+		{
+			return null;
+		}
+
+		@Override
+		public String serialize(Object value)
+		{
+			return null;
+		}
+	};
+	private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(CommonUtils.DATE_FORMAT_XML);
+
 	private DateFormat dateFormat;
+	private final DateTimeFormatter dateTimeFormatter = DATE_TIME_FORMATTER.withZone(ZoneId.systemDefault());
+	private ThreadLocal<DateFormat> localDateFormat = ThreadLocal.withInitial(this::createDateFormat);
 	private boolean prettyPrint = false;
 	private String prettyLineSymbol = null;
 	private String prettyIndentSymbol = null;
+	private boolean streaming = false;
+	private int maxDepth = DEFAULT_MAX_DEPTH;
+	private int parallelThreshold = 0;
+	private boolean parallelParsing = false;
+	private Charset charset = StandardCharsets.UTF_8;
+	private Map<Class<?>, Adapter<?>> adapters = Collections.emptyMap();
+	private final Map<Class<?>, Adapter<?>> resolvedAdapters = new ConcurrentHashMap<>();
 
 	/**
 	 * Gets the date format.
@@ -25,14 +70,75 @@ public class Config
 	}
 
 	/**
-	 * Sets the date format.
+	 * Sets the date format. Copy of date format is kept, so later changes of
+	 * <code>dateFormat</code> are not applied.
 	 *
 	 * @param dateFormat
 	 *          the new date format
 	 */
 	public void setDateFormat(DateFormat dateFormat)
 	{
-		this.dateFormat = dateFormat;
+		this.dateFormat = dateFormat != null ? (DateFormat) dateFormat.clone() : null;
+		this.localDateFormat = ThreadLocal.withInitial(this::createDateFormat);
+	}
+
+	/**
+	 * Creates copy of config, that could be changed without affecting this
+	 * config.
+	 *
+	 * @return the config
+	 */
+	protected Config copy()
+	{
+		Config copy = new Config();
+		copy.setDateFormat(dateFormat);
+		copy.prettyPrint = prettyPrint;
+		copy.prettyLineSymbol = prettyLineSymbol;
+		copy.prettyIndentSymbol = prettyIndentSymbol;
+		copy.streaming = streaming;
+		copy.maxDepth = maxDepth;
+		copy.parallelThreshold = parallelThreshold;
+		copy.parallelParsing = parallelParsing;
+		copy.charset = charset;
+		copy.adapters = adapters;
+		return copy;
+	}
+
+	/**
+	 * Gets the date format of current thread. <code>DateFormat</code> is not
+	 * thread-safe, so each thread uses its own copy of date format.
+	 *
+	 * @return the local date format
+	 */
+	protected DateFormat getLocalDateFormat()
+	{
+		return localDateFormat.get();
+	}
+
+	/**
+	 * Gets the formatter of default date format in default time zone, that is
+	 * used for <code>Date</code>, if no custom date format is set. Formatter is
+	 * immutable, so it is shared by all threads.
+	 *
+	 * @return the date time formatter
+	 */
+	protected DateTimeFormatter getDateTimeFormatter()
+	{
+		return dateTimeFormatter;
+	}
+
+	/**
+	 * Creates copy of date format, or default date format if none is set.
+	 *
+	 * @return the date format
+	 */
+	private DateFormat createDateFormat()
+	{
+		if (dateFormat == null)
+		{
+			return new SimpleDateFormat(CommonUtils.DATE_FORMAT_XML);
+		}
+		return (DateFormat) dateFormat.clone();
 	}
 
 	/**
@@ -106,4 +212,202 @@ public class Config
 		this.prettyIndentSymbol = prettyIndentSymbol;
 	}
 
+	/**
+	 * Checks if is streaming.
+	 *
+	 * @return true, if is streaming
+	 */
+	public boolean isStreaming()
+	{
+		return streaming;
+	}
+
+	/**
+	 * Sets the streaming.
+	 *
+	 * @param streaming
+	 *          the new streaming
+	 */
+	public void setStreaming(boolean streaming)
+	{
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Gets the maximal depth of nested elements.
+	 *
+	 * @return the max depth
+	 */
+	public int getMaxDepth()
+	{
+		return maxDepth;
+	}
+
+	/**
+	 * Sets the maximal depth of nested elements.
+	 *
+	 * @param maxDepth
+	 *          the new max depth
+	 */
+	public void setMaxDepth(int maxDepth)
+	{
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Gets the minimal size of collection, that is bound in parallel.
+	 *
+	 * @return the parallel threshold, or <code>0</code> if parallel binding is
+	 *         disabled
+	 */
+	public int getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+
+	/**
+	 * Sets the minimal size of collection, that is bound in parallel. Value
+	 * <code>0</code> disables parallel binding.
+	 *
+	 * @param parallelThreshold
+	 *          the new parallel threshold
+	 */
+	public void setParallelThreshold(int parallelThreshold)
+	{
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Checks if documents are parsed in parallel chunks.
+	 *
+	 * @return true, if is parallel parsing
+	 */
+	public boolean isParallelParsing()
+	{
+		return parallelParsing;
+	}
+
+	/**
+	 * Sets the parallel parsing.
+	 *
+	 * @param parallelParsing
+	 *          the new parallel parsing
+	 */
+	public void setParallelParsing(boolean parallelParsing)
+	{
+		this.parallelParsing = parallelParsing;
+	}
+
+	/**
+	 * Gets the charset of XML written into <code>OutputStream</code>.
+	 *
+	 * @return the charset
+	 */
+	public Charset getCharset()
+	{
+		return charset;
+	}
+
+	/**
+	 * Sets the charset of XML written into <code>OutputStream</code>. If is set
+	 * to <code>null</code>, it uses default UTF-8.
+	 *
+	 * @param charset
+	 *          the new charset
+	 */
+	public void setCharset(Charset charset)
+	{
+		this.charset = charset != null ? charset : StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Gets the adapters registered for types.
+	 *
+	 * @return the adapters
+	 */
+	public Map<Class<?>, Adapter<?>> getAdapters()
+	{
+		return adapters;
+	}
+
+	/**
+	 * Registers adapter, that is used for all values of type or its subtypes,
+	 * unless field defines its own adapter. Adapter could not be registered for
+	 * primitives, arrays, collections and maps.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param type
+	 *          the type
+	 * @param adapter
+	 *          the adapter
+	 */
+	public <T> void addAdapter(Class<T> type, Adapter<T> adapter)
+	{
+		if (type.isPrimitive() || type.isArray() || Object.class.equals(type) || Iterable.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))
+		{
+			throw new IllegalArgumentException("Adapter could not be registered for " + type.getName() + ".");
+		}
+		Map<Class<?>, Adapter<?>> mapAdapters = new HashMap<>(adapters);
+		mapAdapters.put(type, adapter);
+		adapters = Collections.unmodifiableMap(mapAdapters);
+		resolvedAdapters.clear();
+	}
+
+	/**
+	 * Gets the adapter registered for type, its superclass or interface. Adapter
+	 * is resolved once per type and remembered.
+	 *
+	 * @param type
+	 *          the type
+	 * @return the adapter, or <code>null</code> if no adapter is registered
+	 */
+	protected Adapter<?> getAdapter(Class<?> type)
+	{
+		if (adapters.isEmpty())
+		{
+			return null;
+		}
+		Adapter<?> adapter = resolvedAdapters.get(type);
+		if (adapter == null)
+		{
+			adapter = resolveAdapter(type);
+			resolvedAdapters.putIfAbsent(type, adapter);
+		}
+		return adapter != NO_ADAPTER ? adapter : null;
+	}
+
+	/**
+	 * Resolves adapter of type by searching its superclasses and interfaces.
+	 *
+	 * @param type
+	 *          the type
+	 * @return the adapter, or <code>NO_ADAPTER</code> if no adapter is
+	 *         registered
+	 */
+	private Adapter<?> resolveAdapter(Class<?> type)
+	{
+		if (type.isPrimitive() || type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))
+		{
+			return NO_ADAPTER;
+		}
+		Deque<Class<?>> queue = new ArrayDeque<>();
+		queue.add(type);
+		while (!queue.isEmpty())
+		{
+			Class<?> current = queue.poll();
+			Adapter<?> adapter = adapters.get(current);
+			if (adapter != null)
+			{
+				return adapter;
+			}
+			if (current.getSuperclass() != null)
+			{
+				queue.add(current.getSuperclass());
+			}
+			Collections.addAll(queue, current.getInterfaces());
+		}
+		return NO_ADAPTER;
+	}
+
 }
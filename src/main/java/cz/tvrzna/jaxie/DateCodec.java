@@ -0,0 +1,162 @@
+package cz.tvrzna.jaxie;
+
+import java.text.ParseException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQuery;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Formatting and parsing of dates. Types of <code>java.time</code> are written
+ * in ISO formats by shared <code>DateTimeFormatter</code> instances, that are
+ * immutable and thread-safe. <code>Date</code> uses shared formatter of default
+ * date format too, only custom <code>DateFormat</code> is copied for each
+ * thread.
+ *
+ * @author michalt
+ */
+public class DateCodec
+{
+	private static final Map<Class<?>, DateTimeFormatter> MAP_FORMATTERS = new HashMap<>();
+	private static final Map<Class<?>, TemporalQuery<?>> MAP_QUERIES = new HashMap<>();
+
+	static
+	{
+		register(Instant.class, DateTimeFormatter.ISO_INSTANT, Instant::from);
+		register(LocalDate.class, DateTimeFormatter.ISO_LOCAL_DATE, LocalDate::from);
+		register(LocalDateTime.class, DateTimeFormatter.ISO_LOCAL_DATE_TIME, LocalDateTime::from);
+		register(OffsetDateTime.class, DateTimeFormatter.ISO_OFFSET_DATE_TIME, OffsetDateTime::from);
+		register(ZonedDateTime.class, DateTimeFormatter.ISO_ZONED_DATE_TIME, ZonedDateTime::from);
+	}
+
+	/**
+	 * Instantiates a new date codec.
+	 */
+	private DateCodec()
+	{
+	}
+
+	/**
+	 * Registers formatter and query of type.
+	 *
+	 * @param clazz
+	 *          the clazz
+	 * @param formatter
+	 *          the formatter
+	 * @param query
+	 *          the query
+	 */
+	private static void register(Class<?> clazz, DateTimeFormatter formatter, TemporalQuery<?> query)
+	{
+		MAP_FORMATTERS.put(clazz, formatter);
+		MAP_QUERIES.put(clazz, query);
+	}
+
+	/**
+	 * Checks if class is date, that is handled by this codec. Subclasses of
+	 * <code>Date</code>, e.g. <code>java.sql.Timestamp</code>, are dates too.
+	 *
+	 * @param clazz
+	 *          the clazz
+	 * @return true, if is date
+	 */
+	protected static boolean isDate(Class<?> clazz)
+	{
+		return Date.class.isAssignableFrom(clazz) || MAP_FORMATTERS.containsKey(clazz);
+	}
+
+	/**
+	 * Formats date.
+	 *
+	 * @param value
+	 *          the value
+	 * @param config
+	 *          the config
+	 * @return the string
+	 */
+	protected static String format(Object value, Config config)
+	{
+		if (value instanceof Date)
+		{
+			if (config.getDateFormat() != null)
+			{
+				return config.getLocalDateFormat().format(value);
+			}
+			return config.getDateTimeFormatter().format(((Date) value).toInstant());
+		}
+		return MAP_FORMATTERS.get(value.getClass()).format((TemporalAccessor) value);
+	}
+
+	/**
+	 * Parses date of defined class. Default date format of <code>Date</code> is
+	 * parsed strictly first and leniently by <code>DateFormat</code>, if it
+	 * fails.
+	 *
+	 * @param value
+	 *          the value
+	 * @param clazz
+	 *          the clazz
+	 * @param config
+	 *          the config
+	 * @return the date
+	 * @throws ParseException
+	 *           the parse exception
+	 */
+	protected static Object parse(String value, Class<?> clazz, Config config) throws ParseException
+	{
+		if (Date.class.equals(clazz))
+		{
+			if (config.getDateFormat() == null)
+			{
+				try
+				{
+					return Date.from(config.getDateTimeFormatter().parse(value, Instant::from));
+				}
+				catch (DateTimeException e)
+				{
+					// Falls back to lenient parsing.
+				}
+			}
+			return config.getLocalDateFormat().parseObject(value);
+		}
+		else if (Date.class.isAssignableFrom(clazz))
+		{
+			return toSubclass((Date) parse(value, Date.class, config), clazz);
+		}
+		return MAP_FORMATTERS.get(clazz).parse(value, MAP_QUERIES.get(clazz));
+	}
+
+	/**
+	 * Converts date to subclass of <code>Date</code>, that has constructor with
+	 * time in milliseconds, e.g. <code>java.sql.Timestamp</code>.
+	 *
+	 * @param date
+	 *          the date
+	 * @param clazz
+	 *          the clazz
+	 * @return the date
+	 * @throws ParseException
+	 *           the parse exception
+	 */
+	private static Object toSubclass(Date date, Class<?> clazz) throws ParseException
+	{
+		try
+		{
+			return clazz.getConstructor(long.class).newInstance(date.getTime());
+		}
+		catch (ReflectiveOperationException e)
+		{
+			ParseException ex = new ParseException("Could not create " + clazz.getName() + ".", 0);
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+}
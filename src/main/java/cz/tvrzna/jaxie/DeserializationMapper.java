@@ -1,27 +1,19 @@
 package cz.tvrzna.jaxie;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-
-import cz.tvrzna.jaxie.annotations.JaxieAdapter;
-import cz.tvrzna.jaxie.annotations.JaxieAttribute;
-import cz.tvrzna.jaxie.annotations.JaxieElement;
-import cz.tvrzna.jaxie.annotations.JaxieWrapper;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The Class DeserializationMapper.
@@ -30,6 +22,7 @@ import cz.tvrzna.jaxie.annotations.JaxieWrapper;
  */
 public class DeserializationMapper
 {
+	private static final int MIN_LEAF_SIZE = 64;
 
 	/**
 	 * Deserialize.
@@ -41,7 +34,7 @@ public class DeserializationMapper
 	 * @param clazz
 	 *          the clazz
 	 * @param field
-	 *          the field
+	 *          the field binding
 	 * @param config
 	 *          the config
 	 * @return the t
@@ -49,7 +42,7 @@ public class DeserializationMapper
 	 *           the exception
 	 */
 	@SuppressWarnings("unchecked")
-	protected static <T> T deserialize(List<XmlElement> lstElements, Class<T> clazz, Field field, Config config) throws Exception
+	protected static <T> T deserialize(List<XmlElement> lstElements, Class<T> clazz, FieldBinding field, Config config) throws Exception
 	{
 		if (lstElements == null || lstElements.isEmpty())
 		{
@@ -57,17 +50,13 @@ public class DeserializationMapper
 		}
 		XmlElement el = lstElements.get(lstElements.size() - 1);
 
-		if (field != null)
+		Adapter<?> adapterHandler = getAdapter(field, clazz, config);
+		if (adapterHandler != null)
 		{
-			JaxieAdapter adapter = field.getAnnotation(JaxieAdapter.class);
-			if (adapter != null)
-			{
-				Adapter<T> adapterHandler = (Adapter<T>) adapter.value().getDeclaredConstructor().newInstance();
-				return adapterHandler.deserialize(el.getTextContent());
-			}
+			return (T) adapterHandler.deserialize(el.getTextContent());
 		}
 
-		if ((CommonUtils.SIMPLE_CLASSES.contains(clazz) || Enum.class.isAssignableFrom(clazz)) && !clazz.isArray())
+		if ((CommonUtils.SIMPLE_CLASSES.contains(clazz) || DateCodec.isDate(clazz) || Enum.class.isAssignableFrom(clazz)) && !clazz.isArray())
 		{
 			return (T) deserializeValue(el.getTextContent(), clazz, config);
 		}
@@ -76,7 +65,7 @@ public class DeserializationMapper
 			Class<?> lstSubClazz = null;
 			if (field != null)
 			{
-				lstSubClazz = getClassFromField(field, 0);
+				lstSubClazz = field.getKeyType();
 			}
 			if (lstSubClazz == null)
 			{
@@ -100,8 +89,8 @@ public class DeserializationMapper
 			Class<?> valueClazz = null;
 			if (field != null)
 			{
-				keyClazz = getClassFromField(field, 0);
-				valueClazz = getClassFromField(field, 1);
+				keyClazz = field.getKeyType();
+				valueClazz = field.getValueType();
 			}
 			if (keyClazz == null || valueClazz == null)
 			{
@@ -148,73 +137,222 @@ public class DeserializationMapper
 	 * @throws Exception
 	 *           the exception
 	 */
+	@SuppressWarnings("unchecked")
 	private static <T> T deserializeObject(XmlElement el, Class<T> clazz, Config config) throws Exception
 	{
-		T result = clazz.getDeclaredConstructor().newInstance();
+		BindingPlan plan = BindingPlan.of(clazz);
+		T result = plan.newInstance();
 
-		for (Field field : CommonUtils.getFields(clazz))
+		for (XmlAttribute attr : el.lstAttributes)
 		{
-			if (field.isAnnotationPresent(JaxieAttribute.class))
+			FieldBinding field = plan.getAttribute(attr.getName());
+			if (field != null)
 			{
-				JaxieAttribute attr = field.getAnnotation(JaxieAttribute.class);
-				String name = attr.value().isEmpty() ? field.getName() : attr.value();
-
-				List<XmlAttribute> lstAttributes = el.getAttributes(name);
-				if (!lstAttributes.isEmpty())
-				{
-					fillField(result, deserializeValue(lstAttributes.get(lstAttributes.size() - 1).getValue(), field.getType(), config), field);
-				}
-				continue;
+				fillAttribute(result, attr.getValue(), field, config);
 			}
+		}
 
-			XmlElement currentElement = el;
-			if (field.isAnnotationPresent(JaxieWrapper.class))
+		Object[] values = new Object[plan.getFields().size()];
+		for (XmlElement child : el.lstChildren)
+		{
+			FieldBinding field = plan.getElement(child.name);
+			if (field != null)
 			{
-				JaxieWrapper wrapper = field.getAnnotation(JaxieWrapper.class);
-				String name = wrapper.value();
+				collect(values, child, field, config);
+			}
 
-				List<XmlElement> lstElements = el.get(name);
-				if (lstElements.isEmpty())
+			Map<String, FieldBinding> mapWrapped = plan.getWrapped(child.name);
+			if (mapWrapped != null)
+			{
+				for (FieldBinding wrapped : mapWrapped.values())
+				{
+					values[wrapped.getIndex()] = null;
+				}
+				for (XmlElement wrappedChild : child.lstChildren)
 				{
-					continue;
+					field = mapWrapped.get(wrappedChild.name);
+					if (field != null)
+					{
+						collect(values, wrappedChild, field, config);
+					}
 				}
-				currentElement = lstElements.get(lstElements.size() - 1);
 			}
+		}
 
-			JaxieElement jElement = field.getAnnotation(JaxieElement.class);
-			String name = jElement == null || jElement.value().isEmpty() ? field.getName() : jElement.value();
-			List<XmlElement> lstElements = currentElement.get(name);
-			if (lstElements.isEmpty())
+		for (FieldBinding field : plan.getElements())
+		{
+			Object value = values[field.getIndex()];
+			if (value == null)
 			{
 				continue;
 			}
-			fillField(result, deserialize(lstElements, field.getType(), field, config), field);
+			else if (field.isCollected())
+			{
+				deserializeItems((List<Object>) value, field.getItemType(), config);
+			}
+			else if (field.isPrimitive())
+			{
+				fillPrimitive(result, ((XmlElement) value).getTextContent(), field);
+			}
+			else
+			{
+				fillField(result, deserialize(Collections.singletonList((XmlElement) value), field.getType(), field, config), field);
+			}
 		}
+		fillCollected(result, plan, values);
 
 		return result;
 	}
 
 	/**
-	 * Gets the class from field.
+	 * Collects element of field. Elements of collections and arrays are
+	 * collected into list of items, that is deserialized at once, otherwise only
+	 * the last element is kept.
+	 *
+	 * @param values
+	 *          the values by index of field
+	 * @param el
+	 *          the el
+	 * @param field
+	 *          the field binding
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void collect(Object[] values, XmlElement el, FieldBinding field, Config config) throws Exception
+	{
+		if (field.isCollected())
+		{
+			getItems(values, field).add(el);
+		}
+		else
+		{
+			values[field.getIndex()] = el;
+		}
+	}
+
+	/**
+	 * Gets the list of collected items of field, that is created if necessary.
+	 *
+	 * @param values
+	 *          the values by index of field
+	 * @param field
+	 *          the field binding
+	 * @return the items
+	 */
+	@SuppressWarnings("unchecked")
+	protected static List<Object> getItems(Object[] values, FieldBinding field)
+	{
+		List<Object> items = (List<Object>) values[field.getIndex()];
+		if (items == null)
+		{
+			items = new ArrayList<>();
+			values[field.getIndex()] = items;
+		}
+		return items;
+	}
+
+	/**
+	 * Fills all collections and arrays from collected items.
+	 *
+	 * @param result
+	 *          the result
+	 * @param plan
+	 *          the plan
+	 * @param values
+	 *          the values by index of field
+	 * @throws Exception
+	 *           the exception
+	 */
+	@SuppressWarnings("unchecked")
+	protected static void fillCollected(Object result, BindingPlan plan, Object[] values) throws Exception
+	{
+		for (FieldBinding field : plan.getElements())
+		{
+			if (field.isCollected() && values[field.getIndex()] != null)
+			{
+				fillField(result, toCollection((List<Object>) values[field.getIndex()], field.getType()), field);
+			}
+		}
+	}
+
+	/**
+	 * Converts list of items into collection or array.
 	 *
+	 * @param list
+	 *          the list
+	 * @param clazz
+	 *          the clazz
+	 * @return the object
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected static Object toCollection(List<Object> list, Class<?> clazz) throws Exception
+	{
+		if (!clazz.isArray())
+		{
+			return list;
+		}
+		Class<?> arrSubClazz = clazz.getComponentType();
+		if (CommonUtils.PRIMITIVE_CLASSES.contains(arrSubClazz))
+		{
+			return CommonUtils.convertArrayToPrimitive(list, arrSubClazz);
+		}
+		return list.toArray((Object[]) Array.newInstance(arrSubClazz, list.size()));
+	}
+
+	/**
+	 * Fills value of attribute into field.
+	 *
+	 * @param result
+	 *          the result
+	 * @param value
+	 *          the value
 	 * @param field
-	 *          the field
-	 * @param index
-	 *          the index
-	 * @return the class from field
+	 *          the field binding
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
 	 */
-	private static Class<?> getClassFromField(Field field, int index)
+	protected static void fillAttribute(Object result, String value, FieldBinding field, Config config) throws Exception
 	{
-		Object o = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[index];
-		if (o instanceof Class)
+		Adapter<?> adapterHandler = field.isPrimitive() ? null : getAdapter(field, field.getType(), config);
+		if (field.isPrimitive())
 		{
-			return (Class<?>) o;
+			fillPrimitive(result, value, field);
 		}
-		else if (o instanceof Type)
+		else if (adapterHandler != null)
+		{
+			fillField(result, adapterHandler.deserialize(value), field);
+		}
+		else
+		{
+			fillField(result, deserializeValue(value, field.getType(), config), field);
+		}
+	}
+
+	/**
+	 * Gets the adapter of field, or adapter registered for class in config.
+	 *
+	 * @param field
+	 *          the field binding, or <code>null</code> if value is not field
+	 * @param clazz
+	 *          the clazz
+	 * @param config
+	 *          the config
+	 * @return the adapter, or <code>null</code> if there is none
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected static Adapter<?> getAdapter(FieldBinding field, Class<?> clazz, Config config) throws Exception
+	{
+		if (field != null && field.getAdapterClass() != null)
 		{
-			return o.getClass();
+			return field.getAdapter();
 		}
-		return null;
+		return config.getAdapter(clazz);
 	}
 
 	/**
@@ -232,9 +370,9 @@ public class DeserializationMapper
 	 */
 	@SuppressWarnings(
 	{ "rawtypes", "unchecked" })
-	private static Object deserializeValue(String value, Class<?> clazz, Config config) throws ParseException
+	protected static Object deserializeValue(String value, Class<?> clazz, Config config) throws ParseException
 	{
-		if ("null".equals(value))
+		if (value == null || "null".equals(value))
 		{
 			return null;
 		}
@@ -270,10 +408,9 @@ public class DeserializationMapper
 		{
 			return new BigDecimal(value);
 		}
-		else if (Date.class.equals(clazz))
+		else if (DateCodec.isDate(clazz))
 		{
-			DateFormat df = Optional.ofNullable(config.getDateFormat()).orElse(new SimpleDateFormat(CommonUtils.DATE_FORMAT_XML));
-			return df.parseObject(value);
+			return DateCodec.parse(value, clazz, config);
 		}
 		else if (Enum.class.isAssignableFrom(clazz))
 		{
@@ -297,14 +434,78 @@ public class DeserializationMapper
 	 * @throws Exception
 	 *           the exception
 	 */
+	@SuppressWarnings("unchecked")
 	private static <T> List<T> deserializeList(List<XmlElement> lstElements, Class<T> clazz, Config config) throws Exception
 	{
-		List<T> result = new ArrayList<>();
-		for (XmlElement el : lstElements)
+		List<Object> result = new ArrayList<>(lstElements);
+		deserializeItems(result, clazz, config);
+		return (List<T>) result;
+	}
+
+	/**
+	 * Deserialize collected elements in place of list of items, so their order
+	 * is kept. Lists, that are not smaller than parallel threshold from config,
+	 * are split into tasks of <code>ForkJoinPool</code>.
+	 *
+	 * @param items
+	 *          the items
+	 * @param clazz
+	 *          the clazz
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void deserializeItems(List<Object> items, Class<?> clazz, Config config) throws Exception
+	{
+		if (config.getParallelThreshold() <= 0 || items.size() < config.getParallelThreshold())
 		{
-			result.add(deserialize(el, clazz, config));
+			deserializeItems(items, 0, items.size(), clazz, config);
+			return;
+		}
+
+		int leafSize = Math.max(MIN_LEAF_SIZE, items.size() / (ForkJoinPool.getCommonPoolParallelism() * 4));
+		try
+		{
+			new BindTask(items, 0, items.size(), leafSize, clazz, config).invoke();
+		}
+		catch (CompletionException e)
+		{
+			Throwable cause = e;
+			while (cause instanceof CompletionException && cause.getCause() != null)
+			{
+				cause = cause.getCause();
+			}
+			if (cause instanceof Exception)
+			{
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Deserialize range of collected elements in place of list of items.
+	 *
+	 * @param items
+	 *          the items
+	 * @param from
+	 *          the from
+	 * @param to
+	 *          the to
+	 * @param clazz
+	 *          the clazz
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void deserializeItems(List<Object> items, int from, int to, Class<?> clazz, Config config) throws Exception
+	{
+		for (int i = from; i < to; i++)
+		{
+			items.set(i, deserialize((XmlElement) items.get(i), clazz, config));
 		}
-		return result;
 	}
 
 	/**
@@ -349,17 +550,116 @@ public class DeserializationMapper
 	 * @param value
 	 *          the value
 	 * @param field
-	 *          the field
+	 *          the field binding
 	 * @throws Exception
 	 *           the exception
 	 */
-	private static <T, A> void fillField(T result, Object value, Field field) throws Exception
+	protected static <T, A> void fillField(T result, Object value, FieldBinding field) throws Exception
 	{
 		if (value == null)
 		{
 			return;
 		}
-		field.setAccessible(true);
 		field.set(result, value);
 	}
+
+	/**
+	 * Fill primitive field without boxing.
+	 *
+	 * @param result
+	 *          the result
+	 * @param value
+	 *          the value
+	 * @param field
+	 *          the field binding
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected static void fillPrimitive(Object result, String value, FieldBinding field) throws Exception
+	{
+		if (value == null || "null".equals(value))
+		{
+			return;
+		}
+		FieldAccessor accessor = field.getAccessor();
+		if (int.class.equals(field.getType()))
+		{
+			accessor.setInt(result, Integer.parseInt(value));
+		}
+		else if (long.class.equals(field.getType()))
+		{
+			accessor.setLong(result, Long.parseLong(value));
+		}
+		else if (double.class.equals(field.getType()))
+		{
+			accessor.setDouble(result, Double.parseDouble(value));
+		}
+		else
+		{
+			accessor.setBoolean(result, Boolean.parseBoolean(value));
+		}
+	}
+
+	/**
+	 * Task, that deserializes range of collected elements. Ranges larger than
+	 * leaf size are split in halves.
+	 *
+	 * @author michalt
+	 */
+	private static final class BindTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final transient List<Object> items;
+		private final int from;
+		private final int to;
+		private final int leafSize;
+		private final Class<?> clazz;
+		private final transient Config config;
+
+		/**
+		 * Instantiates a new bind task.
+		 *
+		 * @param items
+		 *          the items
+		 * @param from
+		 *          the from
+		 * @param to
+		 *          the to
+		 * @param leafSize
+		 *          the leaf size
+		 * @param clazz
+		 *          the clazz
+		 * @param config
+		 *          the config
+		 */
+		private BindTask(List<Object> items, int from, int to, int leafSize, Class<?> clazz, Config config)
+		{
+			this.items = items;
+			this.from = from;
+			this.to = to;
+			this.leafSize = leafSize;
+			this.clazz = clazz;
+			this.config = config;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= leafSize)
+			{
+				try
+				{
+					deserializeItems(items, from, to, clazz, config);
+				}
+				catch (Exception e)
+				{
+					throw new CompletionException(e);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new BindTask(items, from, middle, leafSize, clazz, config), new BindTask(items, middle, to, leafSize, clazz, config));
+		}
+	}
 }
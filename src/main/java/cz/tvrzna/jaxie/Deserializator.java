@@ -2,8 +2,8 @@ package cz.tvrzna.jaxie;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * The Class Deserializator.
@@ -31,7 +31,7 @@ public class Deserializator
 	{
 		try
 		{
-			return parse(new StringReader(content));
+			return parse(new XmlTokenizer(content));
 		}
 		catch (Exception e)
 		{
@@ -50,273 +50,234 @@ public class Deserializator
 	 */
 	public static XmlElement parse(Reader reader) throws IOException
 	{
-		return parse(reader, null);
+		return parse(new XmlTokenizer(reader));
 	}
 
 	/**
-	 * Parses the.
+	 * Parses encoded bytes, whose encoding is declared by header of document.
 	 *
-	 * @param reader
-	 *          the reader
-	 * @param parent
-	 *          the parent
+	 * @param content
+	 *          the content
 	 * @return the xml element
 	 * @throws IOException
 	 *           Signals that an I/O exception has occurred.
 	 */
-	private static XmlElement parse(Reader reader, XmlElement parent) throws IOException
+	public static XmlElement parse(byte[] content) throws IOException
 	{
-		if (parent == null)
+		return parse(new XmlTokenizer(content));
+	}
+
+	/**
+	 * Parses content, that consists of many sibling records, in parallel chunks.
+	 * If content could not be split, it is parsed sequentially.
+	 *
+	 * @param content
+	 *          the content
+	 * @return the xml element
+	 */
+	public static XmlElement parseParallel(String content)
+	{
+		try
 		{
-			parseHeader(reader);
+			return ParallelParser.of(content).parse(new Config());
 		}
-		// TODO: define document (extension of element)
-
-		StringWriter sw = new StringWriter();
-		boolean element = false;
-		boolean endElement = false;
-		XmlElement result = null;
-
-		int c;
-		while ((c = reader.read()) >= 0)
+		catch (Exception e)
 		{
-			// element
-			if (c == '<')
-			{
-				if (!parseComment(reader))
-				{
-					if (!element && result != null)
-					{
-						result.value = sw.toString();
-					}
-					if (!element && result == null && parent != null && sw.getBuffer().length() > 0)
-					{
-						parent.value = sw.toString();
-					}
-					sw.getBuffer().setLength(0);
-					element = true;
-				}
-			}
-			else if (c == '>' && element)
-			{
-				element = false;
-				if (result == null && (parent == null || (parent != null && !sw.toString().equals(parent.name))))
-				{
-					result = new XmlElement(sw.toString().trim(), parent);
-					if (parent != null)
-					{
-						parent.lstChildren.add(result);
-					}
-					sw.getBuffer().setLength(0);
-				}
-				if (endElement)
-				{
-					return result;
-				}
-				else
-				{
-					parse(reader, result);
-					if (parent != null)
-					{
-						result = null;
-					}
-				}
-			}
-			else if (c == '/' && element)
-			{
-				endElement = true;
-			}
-			// Attributes
-			else if (c == ' ' && element)
-			{
-				if (result == null)
-				{
-					result = new XmlElement(sw.toString().trim(), parent);
-					if (parent != null)
-					{
-						parent.lstChildren.add(result);
-					}
-				}
-				sw.getBuffer().setLength(0);
-				parseAttribute(reader, result);
-			}
-			// The rest
-			else
-			{
-				sw.write(c);
-			}
+			return null;
 		}
-		return result;
 	}
 
 	/**
-	 * Parses the attribute.
+	 * Parses encoded bytes, that consist of many sibling records, in parallel
+	 * chunks. If bytes could not be split, they are parsed sequentially.
 	 *
-	 * @param reader
-	 *          the reader
-	 * @param element
-	 *          the element
+	 * @param content
+	 *          the content
+	 * @return the xml element
 	 * @throws IOException
 	 *           Signals that an I/O exception has occurred.
 	 */
-	private static void parseAttribute(Reader reader, XmlElement element) throws IOException
+	public static XmlElement parseParallel(byte[] content) throws IOException
 	{
-		StringWriter sw = new StringWriter();
-		boolean readValue = false;
-		String name = null;
+		return ParallelParser.of(ByteBuffer.wrap(content)).parse(new Config());
+	}
 
-		int c;
-		while ((c = reader.read()) >= 0)
+	/**
+	 * Parses content into tree, that keeps content and creates values of
+	 * attributes and texts only when they are requested.
+	 *
+	 * @param content
+	 *          the content
+	 * @return the xml element
+	 */
+	public static XmlElement parseLazy(String content)
+	{
+		try
 		{
-			if (c == '=')
-			{
-				name = sw.toString().trim();
-				sw.getBuffer().setLength(0);
-			}
-			else if (c == '"')
-			{
-				if (name == null)
-				{
-					return;
-				}
-				if (readValue)
-				{
-					element.addAttribute(name, sw.toString());
-					sw.getBuffer().setLength(0);
-					name = null;
-					readValue = false;
-				}
-				else
-				{
-					readValue = true;
-				}
-			}
-			else if ((c == ' ' || c == '>') && !readValue)
-			{
-				name = sw.toString().trim();
-				if (name != null && !name.isEmpty())
-				{
-					element.addAttribute(name, null);
-				}
-
-				if (c == ' ')
-				{
-					parseAttribute(reader, element);
-				}
-				else
-				{
-					reader.skip(-1l);
-				}
-
-				return;
-			}
-			else
-			{
-				sw.write(c);
-			}
+			XmlTokenizer tokenizer = new XmlTokenizer(content);
+			tokenizer.setLazy(true);
+			return parse(tokenizer);
+		}
+		catch (Exception e)
+		{
+			return null;
 		}
 	}
 
 	/**
-	 * Parses the comment.
+	 * Parses encoded bytes into tree, that keeps bytes and decodes values of
+	 * attributes and texts only when they are requested.
 	 *
-	 * @param reader
-	 *          the reader
-	 * @return true, if successful
+	 * @param content
+	 *          the content
+	 * @return the xml element
 	 * @throws IOException
 	 *           Signals that an I/O exception has occurred.
 	 */
-	private static boolean parseComment(Reader reader) throws IOException
+	public static XmlElement parseLazy(byte[] content) throws IOException
 	{
-		int c = reader.read();
-		if (c == '!')
-		{
-			c = reader.read();
-			if (c == '-')
-			{
-				c = reader.read();
-				if (c != '-')
-				{
-					reader.skip(-3l);
-					return false;
-				}
-			}
-			else
-			{
-				reader.skip(-2l);
-				return false;
-			}
-		}
-		else
-		{
-			reader.skip(-1l);
-			return false;
-		}
-		int counter = 0;
-		while ((c = reader.read()) >= 0)
+		XmlTokenizer tokenizer = new XmlTokenizer(content);
+		tokenizer.setLazy(true);
+		return parse(tokenizer);
+	}
+
+	/**
+	 * Parses root element with all its content from tokenizer. Parsing stops at
+	 * the end of root element.
+	 *
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @return the xml element
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public static XmlElement parse(XmlTokenizer tokenizer) throws IOException
+	{
+		XmlEvent event;
+		while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
 		{
-			if (c == '-')
-			{
-				counter++;
-			}
-			else if (c == '>' && counter > 1)
+			if (event == XmlEvent.START_ELEMENT)
 			{
-				return true;
-			}
-			else
-			{
-				counter = 0;
+				return parseElement(tokenizer);
 			}
 		}
-		return true;
+		return null;
 	}
 
 	/**
-	 * Parses the header.
+	 * Parses current element, whose start was just read by tokenizer, with all
+	 * its content. Parsing stops at the end of this element.
 	 *
-	 * @param reader
-	 *          the reader
-	 * @return true, if successful
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @return the xml element
 	 * @throws IOException
 	 *           Signals that an I/O exception has occurred.
 	 */
-	private static boolean parseHeader(Reader reader) throws IOException
+	protected static XmlElement parseElement(XmlTokenizer tokenizer) throws IOException
 	{
-		StringWriter sw = new StringWriter();
-		boolean possibleEnd = false;
+		return parseContent(tokenizer, new XmlElement(tokenizer.getName(), null));
+	}
 
-		int c = reader.read();
-		if (c == '<')
+	/**
+	 * Parses content of element from tokenizer into this element. Parsing stops
+	 * at the end of this element, or at the end of document. Text of element,
+	 * that is split into more segments, e.g. by comments or child elements, is
+	 * collected in builder and joined at the end of element.
+	 *
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param current
+	 *          the current element
+	 * @return the xml element
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	protected static XmlElement parseContent(XmlTokenizer tokenizer, XmlElement current) throws IOException
+	{
+		StringBuilder[] texts = new StringBuilder[16];
+		int level = 0;
+		XmlEvent event;
+		while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
 		{
-			c = reader.read();
-			if (c != '?')
+			switch (event)
 			{
-				reader.skip(-2l);
-				return false;
+				case START_ELEMENT:
+					XmlElement el = new XmlElement(tokenizer.getName(), current);
+					current.addChild(el);
+					current = el;
+					if (++level == texts.length)
+					{
+						texts = Arrays.copyOf(texts, level * 2);
+					}
+					break;
+				case ATTRIBUTE:
+					if (tokenizer.getLazyValue() != null)
+					{
+						current.addAttribute(new XmlAttribute(tokenizer.getName(), tokenizer.getLazyValue()));
+					}
+					else
+					{
+						current.addAttribute(tokenizer.getName(), tokenizer.getValue());
+					}
+					break;
+				case TEXT:
+					if (texts[level] != null)
+					{
+						texts[level].append(tokenizer.getValue());
+					}
+					else if (current.value == null && current.lazyValue == null && tokenizer.getLazyValue() != null)
+					{
+						current.lazyValue = tokenizer.getLazyValue();
+					}
+					else if (current.value == null && current.lazyValue == null)
+					{
+						current.value = tokenizer.getValue();
+					}
+					else
+					{
+						texts[level] = new StringBuilder(current.getValue()).append(tokenizer.getValue());
+					}
+					break;
+				case END_ELEMENT:
+					endText(current, texts, level);
+					if (current.parent == null)
+					{
+						return current;
+					}
+					current = current.parent;
+					level--;
+					break;
+				default:
+					break;
 			}
 		}
-		else
+		XmlElement open = current;
+		for (; level >= 0; level--)
 		{
-			reader.skip(-1l);
-			return false;
+			endText(open, texts, level);
+			open = open.parent;
 		}
-		while ((c = reader.read()) >= 0)
+		return current;
+	}
+
+	/**
+	 * Sets text collected in builder as value of element.
+	 *
+	 * @param current
+	 *          the current element
+	 * @param texts
+	 *          the builders of open elements
+	 * @param level
+	 *          the level of element
+	 */
+	private static void endText(XmlElement current, StringBuilder[] texts, int level)
+	{
+		if (texts[level] != null)
 		{
-			if (c == '?')
-			{
-				possibleEnd = true;
-			}
-			else if (c == '>' && possibleEnd)
-			{
-				// TODO: Something with read header
-				return true;
-			}
-			else
-			{
-				possibleEnd = false;
-				sw.write(c);
-			}
+			current.value = texts[level].toString();
+			current.lazyValue = null;
+			texts[level] = null;
 		}
-		return true;
 	}
 }
@@ -0,0 +1,381 @@
+package cz.tvrzna.jaxie;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Accessor of field value, that is built once per field from
+ * <code>MethodHandle</code>. Besides generic boxed access it provides
+ * primitive-specialized getters and setters for <code>int</code>,
+ * <code>long</code>, <code>double</code> and <code>boolean</code> fields, so
+ * their values are never boxed.
+ *
+ * @author michalt
+ */
+public class FieldAccessor
+{
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodHandle REFLECTIVE_GET;
+	private static final MethodHandle REFLECTIVE_SET;
+	private static final MethodHandle MAPPER_GET;
+	private static final MethodHandle MAPPER_SET;
+
+	static
+	{
+		try
+		{
+			REFLECTIVE_GET = LOOKUP.findVirtual(Field.class, "get", MethodType.methodType(Object.class, Object.class));
+			REFLECTIVE_SET = LOOKUP.findVirtual(Field.class, "set", MethodType.methodType(void.class, Object.class, Object.class));
+			MAPPER_GET = LOOKUP.findVirtual(JaxieMapper.class, "get", MethodType.methodType(Object.class, Object.class, int.class));
+			MAPPER_SET = LOOKUP.findVirtual(JaxieMapper.class, "set", MethodType.methodType(void.class, Object.class, int.class, Object.class));
+		}
+		catch (NoSuchMethodException | IllegalAccessException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final MethodHandle getter;
+	private final MethodHandle setter;
+	private final MethodHandle primitiveGetter;
+	private final MethodHandle primitiveSetter;
+
+	/**
+	 * Instantiates a new field accessor from raw getter and setter, whose types
+	 * are convertible to <code>(declaringClass)fieldType</code> and
+	 * <code>(declaringClass, fieldType)void</code>.
+	 *
+	 * @param type
+	 *          the type of field
+	 * @param rawGetter
+	 *          the raw getter
+	 * @param rawSetter
+	 *          the raw setter
+	 */
+	protected FieldAccessor(Class<?> type, MethodHandle rawGetter, MethodHandle rawSetter)
+	{
+		getter = rawGetter.asType(MethodType.methodType(Object.class, Object.class));
+		setter = rawSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		if (isSpecialized(type))
+		{
+			primitiveGetter = rawGetter.asType(MethodType.methodType(type, Object.class));
+			primitiveSetter = rawSetter.asType(MethodType.methodType(void.class, Object.class, type));
+		}
+		else
+		{
+			primitiveGetter = null;
+			primitiveSetter = null;
+		}
+	}
+
+	/**
+	 * Creates accessor of field. If field is not accessible for
+	 * <code>MethodHandle</code>, accessor falls back to reflective access, that
+	 * reports <code>IllegalAccessException</code> on use.
+	 *
+	 * @param field
+	 *          the field
+	 * @return the field accessor
+	 */
+	protected static FieldAccessor of(Field field)
+	{
+		MethodHandle rawGetter;
+		MethodHandle rawSetter;
+		try
+		{
+			rawGetter = LOOKUP.unreflectGetter(field);
+			rawSetter = LOOKUP.unreflectSetter(field);
+		}
+		catch (IllegalAccessException e)
+		{
+			rawGetter = REFLECTIVE_GET.bindTo(field).asType(MethodType.methodType(field.getType(), field.getDeclaringClass()));
+			rawSetter = REFLECTIVE_SET.bindTo(field).asType(MethodType.methodType(void.class, field.getDeclaringClass(), field.getType()));
+		}
+		return new FieldAccessor(field.getType(), rawGetter, rawSetter);
+	}
+
+	/**
+	 * Creates accessor of field, that is handled by generated mapper. Fields
+	 * with primitive-specialized accessors use typed methods of mapper, so their
+	 * values are never boxed.
+	 *
+	 * @param type
+	 *          the type of field
+	 * @param mapper
+	 *          the mapper
+	 * @param index
+	 *          the index of field in mapper
+	 * @return the field accessor
+	 */
+	protected static FieldAccessor of(Class<?> type, JaxieMapper<?> mapper, int index)
+	{
+		MethodHandle get = MAPPER_GET;
+		MethodHandle set = MAPPER_SET;
+		if (isSpecialized(type))
+		{
+			String name = Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1);
+			try
+			{
+				get = LOOKUP.findVirtual(JaxieMapper.class, "get" + name, MethodType.methodType(type, Object.class, int.class));
+				set = LOOKUP.findVirtual(JaxieMapper.class, "set" + name, MethodType.methodType(void.class, Object.class, int.class, type));
+			}
+			catch (NoSuchMethodException | IllegalAccessException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+		MethodHandle rawGetter = MethodHandles.insertArguments(get.bindTo(mapper), 1, index);
+		MethodHandle rawSetter = MethodHandles.insertArguments(set.bindTo(mapper), 1, index);
+		return new FieldAccessor(type, rawGetter, rawSetter);
+	}
+
+	/**
+	 * Checks if type has primitive-specialized accessors.
+	 *
+	 * @param type
+	 *          the type
+	 * @return true, if is specialized
+	 */
+	protected static boolean isSpecialized(Class<?> type)
+	{
+		return int.class.equals(type) || long.class.equals(type) || double.class.equals(type) || boolean.class.equals(type);
+	}
+
+	/**
+	 * Gets the value.
+	 *
+	 * @param o
+	 *          the o
+	 * @return the value
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected Object get(Object o) throws Exception
+	{
+		try
+		{
+			return getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Sets the value.
+	 *
+	 * @param o
+	 *          the o
+	 * @param value
+	 *          the value
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected void set(Object o, Object value) throws Exception
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Gets the value of <code>int</code> field.
+	 *
+	 * @param o
+	 *          the o
+	 * @return the int
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected int getInt(Object o) throws Exception
+	{
+		try
+		{
+			return (int) primitiveGetter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Sets the value of <code>int</code> field.
+	 *
+	 * @param o
+	 *          the o
+	 * @param value
+	 *          the value
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected void setInt(Object o, int value) throws Exception
+	{
+		try
+		{
+			primitiveSetter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Gets the value of <code>long</code> field.
+	 *
+	 * @param o
+	 *          the o
+	 * @return the long
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected long getLong(Object o) throws Exception
+	{
+		try
+		{
+			return (long) primitiveGetter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Sets the value of <code>long</code> field.
+	 *
+	 * @param o
+	 *          the o
+	 * @param value
+	 *          the value
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected void setLong(Object o, long value) throws Exception
+	{
+		try
+		{
+			primitiveSetter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Gets the value of <code>double</code> field.
+	 *
+	 * @param o
+	 *          the o
+	 * @return the double
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected double getDouble(Object o) throws Exception
+	{
+		try
+		{
+			return (double) primitiveGetter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Sets the value of <code>double</code> field.
+	 *
+	 * @param o
+	 *          the o
+	 * @param value
+	 *          the value
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected void setDouble(Object o, double value) throws Exception
+	{
+		try
+		{
+			primitiveSetter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Gets the value of <code>boolean</code> field.
+	 *
+	 * @param o
+	 *          the o
+	 * @return true, if value is true
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected boolean getBoolean(Object o) throws Exception
+	{
+		try
+		{
+			return (boolean) primitiveGetter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Sets the value of <code>boolean</code> field.
+	 *
+	 * @param o
+	 *          the o
+	 * @param value
+	 *          the value
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected void setBoolean(Object o, boolean value) throws Exception
+	{
+		try
+		{
+			primitiveSetter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Rethrows throwable from <code>MethodHandle</code> invocation as
+	 * <code>Exception</code>, while errors are propagated untouched.
+	 *
+	 * @param t
+	 *          the t
+	 * @return the exception
+	 */
+	private static Exception rethrow(Throwable t)
+	{
+		if (t instanceof Error)
+		{
+			throw (Error) t;
+		}
+		else if (t instanceof Exception)
+		{
+			return (Exception) t;
+		}
+		return new Exception(t);
+	}
+}
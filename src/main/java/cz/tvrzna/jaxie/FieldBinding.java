@@ -0,0 +1,347 @@
+package cz.tvrzna.jaxie;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import cz.tvrzna.jaxie.annotations.JaxieAdapter;
+import cz.tvrzna.jaxie.annotations.JaxieAttribute;
+import cz.tvrzna.jaxie.annotations.JaxieElement;
+import cz.tvrzna.jaxie.annotations.JaxieWrapper;
+
+/**
+ * Resolved mapping of one field, that is computed once by
+ * <code>BindingPlan</code> and shared by serialization and deserialization.
+ *
+ * @author michalt
+ */
+public class FieldBinding
+{
+	private static final ClassValue<Adapter<?>> ADAPTERS = new ClassValue<Adapter<?>>()
+	{
+		@Override
+		protected Adapter<?> computeValue(Class<?> type)
+		{
+			try
+			{
+				return (Adapter<?>) type.getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException e)
+			{
+				throw new IllegalStateException("Adapter " + type.getName() + " could not be instantiated.", e);
+			}
+		}
+	};
+
+	private final Field field;
+	private final String name;
+	private final boolean attribute;
+	private final String wrapper;
+	private final Class<? extends Adapter<?>> adapterClass;
+	private final boolean sharedAdapter;
+	private final Class<?> type;
+	private final Class<?> keyType;
+	private final Class<?> valueType;
+	private final FieldAccessor accessor;
+	private final int index;
+
+	/**
+	 * Instantiates a new field binding, whose value is accessed reflectively.
+	 *
+	 * @param field
+	 *          the field
+	 */
+	protected FieldBinding(Field field)
+	{
+		this(field, null, -1);
+	}
+
+	/**
+	 * Instantiates a new field binding.
+	 *
+	 * @param field
+	 *          the field
+	 * @param accessor
+	 *          the accessor, or <code>null</code> if field should be accessed
+	 *          reflectively
+	 * @param index
+	 *          the index of field in <code>BindingPlan</code>
+	 */
+	protected FieldBinding(Field field, FieldAccessor accessor, int index)
+	{
+		this.field = field;
+		this.index = index;
+		this.type = field.getType();
+
+		JaxieAttribute jAttribute = field.getAnnotation(JaxieAttribute.class);
+		JaxieElement jElement = field.getAnnotation(JaxieElement.class);
+		JaxieWrapper jWrapper = field.getAnnotation(JaxieWrapper.class);
+		JaxieAdapter jAdapter = field.getAnnotation(JaxieAdapter.class);
+
+		attribute = jAttribute != null;
+		if (attribute)
+		{
+			name = (jAttribute.value().isEmpty() ? field.getName() : jAttribute.value()).intern();
+			wrapper = null;
+		}
+		else
+		{
+			name = (jElement == null || jElement.value().isEmpty() ? field.getName() : jElement.value()).intern();
+			wrapper = jWrapper != null ? jWrapper.value().intern() : null;
+		}
+		adapterClass = jAdapter != null ? jAdapter.value() : null;
+		sharedAdapter = jAdapter != null && jAdapter.shared();
+
+		keyType = getTypeArgument(field, 0);
+		valueType = getTypeArgument(field, 1);
+
+		if (accessor == null)
+		{
+			try
+			{
+				field.setAccessible(true);
+			}
+			catch (RuntimeException e)
+			{
+				// Access is checked again, when field is used.
+			}
+			accessor = FieldAccessor.of(field);
+		}
+		this.accessor = accessor;
+	}
+
+	/**
+	 * Gets the class of generic type argument of field.
+	 *
+	 * @param field
+	 *          the field
+	 * @param index
+	 *          the index
+	 * @return the class of type argument, or <code>null</code> if it could not
+	 *         be resolved
+	 */
+	private static Class<?> getTypeArgument(Field field, int index)
+	{
+		if (!(field.getGenericType() instanceof ParameterizedType))
+		{
+			return null;
+		}
+		Type[] arguments = ((ParameterizedType) field.getGenericType()).getActualTypeArguments();
+		if (arguments.length <= index)
+		{
+			return null;
+		}
+		Type o = arguments[index];
+		if (o instanceof Class)
+		{
+			return (Class<?>) o;
+		}
+		else if (o instanceof ParameterizedType)
+		{
+			return (Class<?>) ((ParameterizedType) o).getRawType();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the value of field from <code>o</code>.
+	 *
+	 * @param o
+	 *          the o
+	 * @return the value
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected Object get(Object o) throws Exception
+	{
+		return accessor.get(o);
+	}
+
+	/**
+	 * Sets the value of field into <code>o</code>.
+	 *
+	 * @param o
+	 *          the o
+	 * @param value
+	 *          the value
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected void set(Object o, Object value) throws Exception
+	{
+		accessor.set(o, value);
+	}
+
+	/**
+	 * Gets the accessor of field.
+	 *
+	 * @return the accessor
+	 */
+	protected FieldAccessor getAccessor()
+	{
+		return accessor;
+	}
+
+	/**
+	 * Checks if field could be accessed by primitive-specialized accessor,
+	 * without any adapter.
+	 *
+	 * @return true, if is primitive
+	 */
+	protected boolean isPrimitive()
+	{
+		return adapterClass == null && FieldAccessor.isSpecialized(type);
+	}
+
+	/**
+	 * Checks if field is collection or array, whose items are collected from
+	 * all elements with its name.
+	 *
+	 * @return true, if is collected
+	 */
+	protected boolean isCollected()
+	{
+		return adapterClass == null && (Collection.class.isAssignableFrom(type) || type.isArray());
+	}
+
+	/**
+	 * Checks if field is declared as <code>Iterable</code> interface, that is
+	 * not a collection, so its items are pulled one by one during
+	 * serialization.
+	 *
+	 * @return true, if is iterable
+	 */
+	protected boolean isIterable()
+	{
+		return adapterClass == null && type.isInterface() && Iterable.class.isAssignableFrom(type) && !Collection.class.isAssignableFrom(type);
+	}
+
+	/**
+	 * Gets the type of items of collection or array.
+	 *
+	 * @return the item type
+	 */
+	protected Class<?> getItemType()
+	{
+		if (type.isArray())
+		{
+			return type.getComponentType();
+		}
+		return keyType != null ? keyType : Object.class;
+	}
+
+	/**
+	 * Gets the index of field in <code>BindingPlan</code>.
+	 *
+	 * @return the index
+	 */
+	protected int getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Gets the field.
+	 *
+	 * @return the field
+	 */
+	protected Field getField()
+	{
+		return field;
+	}
+
+	/**
+	 * Gets the resolved name of element or attribute, that is interned.
+	 *
+	 * @return the name
+	 */
+	protected String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Checks if field is mapped as attribute.
+	 *
+	 * @return true, if is attribute
+	 */
+	protected boolean isAttribute()
+	{
+		return attribute;
+	}
+
+	/**
+	 * Gets the name of wrapper element, that is interned.
+	 *
+	 * @return the wrapper, or <code>null</code> if field is not wrapped
+	 */
+	protected String getWrapper()
+	{
+		return wrapper;
+	}
+
+	/**
+	 * Gets the adapter class.
+	 *
+	 * @return the adapter class, or <code>null</code> if no adapter is defined
+	 */
+	protected Class<? extends Adapter<?>> getAdapterClass()
+	{
+		return adapterClass;
+	}
+
+	/**
+	 * Gets the instance of adapter class. Shared adapters are created once per
+	 * adapter class and shared by all fields and threads, other adapters are
+	 * created for each call.
+	 *
+	 * @return the adapter, or <code>null</code> if no adapter is defined
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected Adapter<?> getAdapter() throws Exception
+	{
+		if (adapterClass == null)
+		{
+			return null;
+		}
+		else if (sharedAdapter)
+		{
+			return ADAPTERS.get(adapterClass);
+		}
+		return adapterClass.getDeclaredConstructor().newInstance();
+	}
+
+	/**
+	 * Gets the type of field.
+	 *
+	 * @return the type
+	 */
+	protected Class<?> getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Gets the first generic type argument, e.g. element type of
+	 * <code>Collection</code> or key type of <code>Map</code>.
+	 *
+	 * @return the key type
+	 */
+	protected Class<?> getKeyType()
+	{
+		return keyType;
+	}
+
+	/**
+	 * Gets the second generic type argument, e.g. value type of
+	 * <code>Map</code>.
+	 *
+	 * @return the value type
+	 */
+	protected Class<?> getValueType()
+	{
+		return valueType;
+	}
+}
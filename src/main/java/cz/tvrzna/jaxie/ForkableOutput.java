@@ -0,0 +1,32 @@
+package cz.tvrzna.jaxie;
+
+import java.io.IOException;
+
+/**
+ * Output, that could be split into independent outputs of chunks, that are
+ * written by other threads and appended back in original order.
+ *
+ * @author michalt
+ */
+interface ForkableOutput
+{
+
+	/**
+	 * Creates independent output for chunk of children of current element, that
+	 * could be written by another thread.
+	 *
+	 * @return the output of chunk, or <code>null</code> if output could not be
+	 *         split
+	 */
+	XmlOutput fork();
+
+	/**
+	 * Appends children written into output of chunk to current element.
+	 *
+	 * @param chunk
+	 *          the output of chunk
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	void join(XmlOutput chunk) throws IOException;
+}
@@ -1,17 +1,74 @@
 package cz.tvrzna.jaxie;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Main <code>jaxie</code> class, that provides converting of objects to XML as
- * <code>String</code> and XML <code>String</code> to objects.
+ * <code>String</code> and XML <code>String</code> to objects. Jaxie created by
+ * constructor is configured by its <code>with</code> methods, that change it,
+ * so it must not be changed while other threads use it. Jaxie created by
+ * <code>Jaxie.builder()</code> is immutable, so it could be shared as singleton
+ * by any number of threads.
+ *
+ * <pre>
+ * private static final Jaxie JAXIE = Jaxie.builder().withPrettyPrint().withStreaming().build();
+ * </pre>
  *
  * @author michalt
  */
 public class Jaxie
 {
-	private Config config = new Config();
+	private final Config config;
+	private final boolean immutable;
+
+	/**
+	 * Instantiates a new jaxie with default configuration.
+	 */
+	public Jaxie()
+	{
+		this(new Config(), false);
+	}
+
+	/**
+	 * Instantiates a new jaxie.
+	 *
+	 * @param config
+	 *          the config
+	 * @param immutable
+	 *          the immutable
+	 */
+	private Jaxie(Config config, boolean immutable)
+	{
+		this.config = config;
+		this.immutable = immutable;
+	}
+
+	/**
+	 * Creates builder of immutable jaxie.
+	 *
+	 * @return the builder
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
 
 	/**
 	 * To xml.
@@ -26,6 +83,12 @@ public class Jaxie
 	{
 		try
 		{
+			if (config.isStreaming())
+			{
+				StringWriter sw = new StringWriter();
+				SerializationMapper.serialize(object, new XmlWriter(sw, config), config);
+				return sw.toString();
+			}
 			XmlElement el = SerializationMapper.serialize(object, config);
 			return Serializator.serialize(el, 0, config);
 		}
@@ -36,7 +99,9 @@ public class Jaxie
 	}
 
 	/**
-	 * To xml.
+	 * To xml written into <code>OutputStream</code> encoded in configured
+	 * charset, UTF-8 by default. Other charset than UTF-8 is declared in XML
+	 * header. Stream is closed.
 	 *
 	 * @param <T>
 	 *          the generic type
@@ -49,6 +114,13 @@ public class Jaxie
 	{
 		try
 		{
+			if (config.isStreaming())
+			{
+				ByteWriter w = new ByteWriter(os, config.getCharset());
+				SerializationMapper.serialize(object, new XmlWriter(w, config), config);
+				w.close();
+				return;
+			}
 			XmlElement el = SerializationMapper.serialize(object, config);
 			Serializator.serialize(os, el, 0, config);
 		}
@@ -58,6 +130,36 @@ public class Jaxie
 		}
 	}
 
+	/**
+	 * Creates writer, that writes document element by element into
+	 * <code>Writer</code> with configuration of this jaxie. Writer is closed,
+	 * when returned <code>XmlWriter</code> is closed.
+	 *
+	 * @param w
+	 *          the w
+	 * @return the xml writer
+	 */
+	public XmlWriter createWriter(Writer w)
+	{
+		return new XmlWriter(w, config);
+	}
+
+	/**
+	 * Creates writer, that writes document element by element into
+	 * <code>OutputStream</code> encoded in configured charset, UTF-8 by default,
+	 * with configuration of this jaxie. Other charset than UTF-8 is declared in
+	 * XML header before root element. Stream is closed, when returned
+	 * <code>XmlWriter</code> is closed.
+	 *
+	 * @param os
+	 *          the os
+	 * @return the xml writer
+	 */
+	public XmlWriter createWriter(OutputStream os)
+	{
+		return new XmlWriter(new ByteWriter(os, config.getCharset()), config);
+	}
+
 	/**
 	 * From xml.
 	 *
@@ -70,10 +172,224 @@ public class Jaxie
 	 * @return the t
 	 */
 	public <T> T fromXml(String xml, Class<T> clazz)
+	{
+		if (isParallelParsing())
+		{
+			return fromXml(ParallelParser.of(xml), clazz);
+		}
+		return fromXml(new XmlTokenizer(xml), clazz);
+	}
+
+	/**
+	 * From xml read from <code>Reader</code>. Reader is not closed.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param reader
+	 *          the reader
+	 * @param clazz
+	 *          the clazz
+	 * @return the t
+	 */
+	public <T> T fromXml(Reader reader, Class<T> clazz)
+	{
+		return fromXml(new XmlTokenizer(reader), clazz);
+	}
+
+	/**
+	 * From xml read from <code>InputStream</code> in encoding declared by its
+	 * header, UTF-8 by default. Stream is not closed.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param is
+	 *          the is
+	 * @param clazz
+	 *          the clazz
+	 * @return the t
+	 */
+	public <T> T fromXml(InputStream is, Class<T> clazz)
+	{
+		try
+		{
+			return fromXml(new XmlTokenizer(is), clazz);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * From xml encoded in bytes, whose encoding is declared by its header, UTF-8
+	 * by default.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param xml
+	 *          the xml
+	 * @param clazz
+	 *          the clazz
+	 * @return the t
+	 */
+	public <T> T fromXml(byte[] xml, Class<T> clazz)
+	{
+		return fromXml(ByteBuffer.wrap(xml), clazz);
+	}
+
+	/**
+	 * From xml encoded in remaining bytes of buffer, whose encoding is declared
+	 * by its header, UTF-8 by default. Bytes are parsed directly from buffer.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param xml
+	 *          the xml
+	 * @param clazz
+	 *          the clazz
+	 * @return the t
+	 */
+	public <T> T fromXml(ByteBuffer xml, Class<T> clazz)
+	{
+		try
+		{
+			if (isParallelParsing())
+			{
+				return fromXml(ParallelParser.of(xml), clazz);
+			}
+			return fromXml(new XmlTokenizer(xml), clazz);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * From xml read from file in encoding declared by its header, UTF-8 by
+	 * default. File is parsed directly from memory-mapped windows, so even files
+	 * larger than 2 GB are never loaded into heap.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param path
+	 *          the path
+	 * @param clazz
+	 *          the clazz
+	 * @return the t
+	 */
+	public <T> T fromXml(Path path, Class<T> clazz)
+	{
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			if (isParallelParsing())
+			{
+				return fromXml(ParallelParser.of(channel), clazz);
+			}
+			return fromXml(new XmlTokenizer(channel), clazz);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Streams records read from <code>InputStream</code> in encoding declared by
+	 * its header, UTF-8 by default. Each element with defined name is bound to
+	 * object only when stream requests it and it is discarded afterwards, so
+	 * memory use stays constant regardless of size of document.
+	 * <code>InputStream</code> is closed, when returned stream is closed.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param is
+	 *          the is
+	 * @param elementName
+	 *          the element name of records
+	 * @param clazz
+	 *          the clazz
+	 * @return the stream of records
+	 */
+	public <T> Stream<T> stream(InputStream is, String elementName, Class<T> clazz)
+	{
+		try
+		{
+			XmlTokenizer tokenizer = new XmlTokenizer(is);
+			tokenizer.setMaxDepth(config.getMaxDepth());
+			Iterator<T> iterator = new RecordIterator<>(tokenizer, elementName, clazz, config);
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(() -> {
+				try
+				{
+					is.close();
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			});
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * From xml parsed in parallel.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param parser
+	 *          the parser
+	 * @param clazz
+	 *          the clazz
+	 * @return the t
+	 */
+	private <T> T fromXml(ParallelParser parser, Class<T> clazz)
+	{
+		try
+		{
+			return DeserializationMapper.deserialize(parser.parse(config), clazz, config);
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Checks if document should be parsed in parallel. Streaming takes
+	 * precedence over parallel parsing.
+	 *
+	 * @return true, if is parallel parsing
+	 */
+	private boolean isParallelParsing()
+	{
+		return config.isParallelParsing() && !config.isStreaming();
+	}
+
+	/**
+	 * From xml read by tokenizer.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param clazz
+	 *          the clazz
+	 * @return the t
+	 */
+	private <T> T fromXml(XmlTokenizer tokenizer, Class<T> clazz)
 	{
 		try
 		{
-			XmlElement el = Deserializator.parse(xml);
+			tokenizer.setMaxDepth(config.getMaxDepth());
+			if (config.isStreaming())
+			{
+				return StreamDeserializationMapper.deserialize(tokenizer, clazz, config);
+			}
+			XmlElement el = Deserializator.parse(tokenizer);
 			return DeserializationMapper.deserialize(el, clazz, config);
 		}
 		catch (Exception e)
@@ -84,7 +400,8 @@ public class Jaxie
 
 	/**
 	 * Uses custom date format for each date operation. If default date format
-	 * should be used, just set <code>null</code>.
+	 * should be used, just set <code>null</code>. Date format is copied for each
+	 * thread, so it is never shared.
 	 *
 	 * @param customDateFormat
 	 *          the custom date format
@@ -92,8 +409,7 @@ public class Jaxie
 	 */
 	public Jaxie withCustomDateFormat(DateFormat customDateFormat)
 	{
-		config.setDateFormat(customDateFormat);
-		return this;
+		return with(c -> c.setDateFormat(customDateFormat));
 	}
 
 	/**
@@ -115,8 +431,132 @@ public class Jaxie
 	 */
 	public Jaxie withPrettyPrint(boolean prettyPrint)
 	{
-		config.setPrettyPrint(prettyPrint);
-		return this;
+		return with(c -> c.setPrettyPrint(prettyPrint));
+	}
+
+	/**
+	 * Serializes objects directly into output and deserializes objects directly
+	 * from parsed input, without building tree of <code>XmlElement</code>.
+	 * Produced XML and objects are the same.
+	 *
+	 * @return the jaxie
+	 */
+	public Jaxie withStreaming()
+	{
+		return withStreaming(true);
+	}
+
+	/**
+	 * Serializes and deserializes objects with or without streaming.
+	 *
+	 * @param streaming
+	 *          the streaming
+	 * @return the jaxie
+	 */
+	public Jaxie withStreaming(boolean streaming)
+	{
+		return with(c -> c.setStreaming(streaming));
+	}
+
+	/**
+	 * Binds and serializes large collections in parallel, if they have at least
+	 * <code>10000</code> elements.
+	 *
+	 * @return the jaxie
+	 */
+	public Jaxie withParallel()
+	{
+		return withParallel(Config.DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Binds and serializes collections in parallel on common
+	 * <code>ForkJoinPool</code>, if they have at least defined number of
+	 * elements. Order of items is kept, so serialized XML is the same as
+	 * sequential one. Binding works only without streaming. If is set to
+	 * <code>0</code>, all collections are processed sequentially.
+	 *
+	 * @param threshold
+	 *          the threshold
+	 * @return the jaxie
+	 */
+	public Jaxie withParallel(int threshold)
+	{
+		return with(c -> c.setParallelThreshold(threshold));
+	}
+
+	/**
+	 * Parses documents from <code>String</code>, bytes or file in parallel
+	 * chunks, if they consist of many sibling records. Works only without
+	 * streaming.
+	 *
+	 * @return the jaxie
+	 */
+	public Jaxie withParallelParsing()
+	{
+		return withParallelParsing(true);
+	}
+
+	/**
+	 * Parses documents with or without parallel chunks.
+	 *
+	 * @param parallelParsing
+	 *          the parallel parsing
+	 * @return the jaxie
+	 */
+	public Jaxie withParallelParsing(boolean parallelParsing)
+	{
+		return with(c -> c.setParallelParsing(parallelParsing));
+	}
+
+	/**
+	 * Sets maximal depth of nested elements, that could be parsed or serialized.
+	 * Deeper documents and cyclic objects are rejected with exception. Default
+	 * value is <code>512</code>.
+	 *
+	 * @param maxDepth
+	 *          the max depth
+	 * @return the jaxie
+	 */
+	public Jaxie withMaxDepth(int maxDepth)
+	{
+		return with(c -> c.setMaxDepth(maxDepth));
+	}
+
+	/**
+	 * Sets charset of XML written into <code>OutputStream</code>. Other charset
+	 * than UTF-8 is declared in XML header. Characters, that could not be encoded
+	 * in charset, are written as character references. Names and CDATA sections
+	 * with such characters could not be written. If is set to <code>null</code>,
+	 * it uses default UTF-8.
+	 *
+	 * @param charset
+	 *          the charset
+	 * @return the jaxie
+	 */
+	public Jaxie withCharset(Charset charset)
+	{
+		return with(c -> c.setCharset(charset));
+	}
+
+	/**
+	 * Registers adapter, that is used for all values of type or its subtypes,
+	 * including items of collections and maps. Adapter defined by
+	 * <code>JaxieAdapter</code> annotation of field takes precedence. Adapter is
+	 * resolved once per type. Adapter could not be registered for primitives,
+	 * arrays, collections and maps.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param type
+	 *          the type
+	 * @param adapter
+	 *          the adapter
+	 * @return the jaxie
+	 */
+	public <T> Jaxie withAdapter(Class<T> type, Adapter<T> adapter)
+	{
+		return with(c -> c.addAdapter(type, adapter));
 	}
 
 	/**
@@ -129,8 +569,7 @@ public class Jaxie
 	 */
 	public Jaxie withLineIndent(String symbol)
 	{
-		config.setPrettyLineSymbol(symbol);
-		return this;
+		return with(c -> c.setPrettyLineSymbol(symbol));
 	}
 
 	/**
@@ -143,7 +582,25 @@ public class Jaxie
 	 */
 	public Jaxie withTabIndent(String symbol)
 	{
-		config.setPrettyIndentSymbol(symbol);
+		return with(c -> c.setPrettyIndentSymbol(symbol));
+	}
+
+	/**
+	 * Changes config of this jaxie.
+	 *
+	 * @param change
+	 *          the change
+	 * @return the jaxie
+	 * @throws IllegalStateException
+	 *           if jaxie was created by builder
+	 */
+	private Jaxie with(Consumer<Config> change)
+	{
+		if (immutable)
+		{
+			throw new IllegalStateException("Jaxie created by builder could not be changed.");
+		}
+		change.accept(config);
 		return this;
 	}
 
@@ -157,4 +614,210 @@ public class Jaxie
 		return config;
 	}
 
+	/**
+	 * Builder of immutable jaxie. Each <code>with</code> method sets the same
+	 * configuration as the method of <code>Jaxie</code> with the same name.
+	 * Builder could be reused, built jaxie is not affected by later changes.
+	 *
+	 * @author michalt
+	 */
+	public static class Builder
+	{
+		private final Jaxie jaxie = new Jaxie();
+
+		/**
+		 * Instantiates a new builder.
+		 */
+		private Builder()
+		{
+		}
+
+		/**
+		 * Builds immutable jaxie with current configuration.
+		 *
+		 * @return the jaxie
+		 */
+		public Jaxie build()
+		{
+			return new Jaxie(jaxie.config.copy(), true);
+		}
+
+		/**
+		 * See {@link Jaxie#withCustomDateFormat(DateFormat)}.
+		 *
+		 * @param customDateFormat
+		 *          the custom date format
+		 * @return the builder
+		 */
+		public Builder withCustomDateFormat(DateFormat customDateFormat)
+		{
+			jaxie.withCustomDateFormat(customDateFormat);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withPrettyPrint()}.
+		 *
+		 * @return the builder
+		 */
+		public Builder withPrettyPrint()
+		{
+			jaxie.withPrettyPrint();
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withPrettyPrint(boolean)}.
+		 *
+		 * @param prettyPrint
+		 *          the pretty print
+		 * @return the builder
+		 */
+		public Builder withPrettyPrint(boolean prettyPrint)
+		{
+			jaxie.withPrettyPrint(prettyPrint);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withStreaming()}.
+		 *
+		 * @return the builder
+		 */
+		public Builder withStreaming()
+		{
+			jaxie.withStreaming();
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withStreaming(boolean)}.
+		 *
+		 * @param streaming
+		 *          the streaming
+		 * @return the builder
+		 */
+		public Builder withStreaming(boolean streaming)
+		{
+			jaxie.withStreaming(streaming);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withParallel()}.
+		 *
+		 * @return the builder
+		 */
+		public Builder withParallel()
+		{
+			jaxie.withParallel();
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withParallel(int)}.
+		 *
+		 * @param threshold
+		 *          the threshold
+		 * @return the builder
+		 */
+		public Builder withParallel(int threshold)
+		{
+			jaxie.withParallel(threshold);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withParallelParsing()}.
+		 *
+		 * @return the builder
+		 */
+		public Builder withParallelParsing()
+		{
+			jaxie.withParallelParsing();
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withParallelParsing(boolean)}.
+		 *
+		 * @param parallelParsing
+		 *          the parallel parsing
+		 * @return the builder
+		 */
+		public Builder withParallelParsing(boolean parallelParsing)
+		{
+			jaxie.withParallelParsing(parallelParsing);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withMaxDepth(int)}.
+		 *
+		 * @param maxDepth
+		 *          the max depth
+		 * @return the builder
+		 */
+		public Builder withMaxDepth(int maxDepth)
+		{
+			jaxie.withMaxDepth(maxDepth);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withCharset(Charset)}.
+		 *
+		 * @param charset
+		 *          the charset
+		 * @return the builder
+		 */
+		public Builder withCharset(Charset charset)
+		{
+			jaxie.withCharset(charset);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withAdapter(Class, Adapter)}.
+		 *
+		 * @param <T>
+		 *          the generic type
+		 * @param type
+		 *          the type
+		 * @param adapter
+		 *          the adapter
+		 * @return the builder
+		 */
+		public <T> Builder withAdapter(Class<T> type, Adapter<T> adapter)
+		{
+			jaxie.withAdapter(type, adapter);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withLineIndent(String)}.
+		 *
+		 * @param symbol
+		 *          the symbol
+		 * @return the builder
+		 */
+		public Builder withLineIndent(String symbol)
+		{
+			jaxie.withLineIndent(symbol);
+			return this;
+		}
+
+		/**
+		 * See {@link Jaxie#withTabIndent(String)}.
+		 *
+		 * @param symbol
+		 *          the symbol
+		 * @return the builder
+		 */
+		public Builder withTabIndent(String symbol)
+		{
+			jaxie.withTabIndent(symbol);
+			return this;
+		}
+	}
 }
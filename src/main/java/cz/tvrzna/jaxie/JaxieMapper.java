@@ -0,0 +1,256 @@
+package cz.tvrzna.jaxie;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base class of mappers generated at compile time by
+ * <code>JaxieProcessor</code>. Generated mapper creates instances and reads or
+ * writes fields of mapped class directly, so <code>BindingPlan</code> does not
+ * need any reflective access or <code>setAccessible</code> for such class.
+ *
+ * @author michalt
+ * @param <T>
+ *          the generic type
+ */
+public abstract class JaxieMapper<T>
+{
+	/** Suffix of name of generated mapper class. */
+	public static final String MAPPER_SUFFIX = "_JaxieMapper";
+
+	private final Class<T> mappedClass;
+	private final List<String> fieldNames;
+
+	/**
+	 * Instantiates a new jaxie mapper.
+	 *
+	 * @param mappedClass
+	 *          the mapped class
+	 * @param fieldNames
+	 *          the names of fields in order of their indexes
+	 */
+	protected JaxieMapper(Class<T> mappedClass, String... fieldNames)
+	{
+		this.mappedClass = mappedClass;
+		this.fieldNames = Collections.unmodifiableList(Arrays.asList(fieldNames));
+	}
+
+	/**
+	 * Finds generated mapper of class. Mapper is used only if it is generated
+	 * for the same class.
+	 *
+	 * @param clazz
+	 *          the clazz
+	 * @return the jaxie mapper, or <code>null</code> if no mapper was generated
+	 */
+	@SuppressWarnings("unchecked")
+	protected static JaxieMapper<Object> find(Class<?> clazz)
+	{
+		if (clazz.getClassLoader() == null || clazz.isArray() || clazz.isPrimitive())
+		{
+			return null;
+		}
+		try
+		{
+			Class<?> mapperClazz = Class.forName(getMapperName(clazz.getName()), true, clazz.getClassLoader());
+			if (JaxieMapper.class.isAssignableFrom(mapperClazz))
+			{
+				JaxieMapper<Object> mapper = (JaxieMapper<Object>) mapperClazz.getDeclaredConstructor().newInstance();
+				if (clazz.equals(mapper.getMappedClass()))
+				{
+					return mapper;
+				}
+			}
+		}
+		catch (ReflectiveOperationException | LinkageError | SecurityException e)
+		{
+			// No usable mapper was generated
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the name of generated mapper class for class with defined binary
+	 * name. Binary name is kept including <code>$</code> of nested classes, so
+	 * nested and top-level classes never share name of mapper.
+	 *
+	 * @param binaryName
+	 *          the binary name
+	 * @return the mapper name
+	 */
+	public static String getMapperName(String binaryName)
+	{
+		return binaryName.concat(MAPPER_SUFFIX);
+	}
+
+	/**
+	 * Gets the class, that is mapped by this mapper.
+	 *
+	 * @return the mapped class
+	 */
+	public Class<T> getMappedClass()
+	{
+		return mappedClass;
+	}
+
+	/**
+	 * Gets the index of field.
+	 *
+	 * @param name
+	 *          the name
+	 * @return the index, or <code>-1</code> if field is not handled by mapper
+	 */
+	protected int indexOf(String name)
+	{
+		return fieldNames.indexOf(name);
+	}
+
+	/**
+	 * Creates new instance of mapped class.
+	 *
+	 * @return the t
+	 */
+	public abstract T newInstance();
+
+	/**
+	 * Gets the value of field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @return the value
+	 */
+	public abstract Object get(T o, int index);
+
+	/**
+	 * Sets the value of field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @param value
+	 *          the value
+	 */
+	public abstract void set(T o, int index, Object value);
+
+	/**
+	 * Gets the value of <code>int</code> field with defined index. Generated
+	 * mapper overrides it for its <code>int</code> fields, so value is not
+	 * boxed.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @return the int
+	 */
+	public int getInt(T o, int index)
+	{
+		return (Integer) get(o, index);
+	}
+
+	/**
+	 * Sets the value of <code>int</code> field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @param value
+	 *          the value
+	 */
+	public void setInt(T o, int index, int value)
+	{
+		set(o, index, value);
+	}
+
+	/**
+	 * Gets the value of <code>long</code> field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @return the long
+	 */
+	public long getLong(T o, int index)
+	{
+		return (Long) get(o, index);
+	}
+
+	/**
+	 * Sets the value of <code>long</code> field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @param value
+	 *          the value
+	 */
+	public void setLong(T o, int index, long value)
+	{
+		set(o, index, value);
+	}
+
+	/**
+	 * Gets the value of <code>double</code> field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @return the double
+	 */
+	public double getDouble(T o, int index)
+	{
+		return (Double) get(o, index);
+	}
+
+	/**
+	 * Sets the value of <code>double</code> field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @param value
+	 *          the value
+	 */
+	public void setDouble(T o, int index, double value)
+	{
+		set(o, index, value);
+	}
+
+	/**
+	 * Gets the value of <code>boolean</code> field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @return true, if value is true
+	 */
+	public boolean getBoolean(T o, int index)
+	{
+		return (Boolean) get(o, index);
+	}
+
+	/**
+	 * Sets the value of <code>boolean</code> field with defined index.
+	 *
+	 * @param o
+	 *          the o
+	 * @param index
+	 *          the index
+	 * @param value
+	 *          the value
+	 */
+	public void setBoolean(T o, int index, boolean value)
+	{
+		set(o, index, value);
+	}
+}
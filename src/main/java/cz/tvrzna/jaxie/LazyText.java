@@ -0,0 +1,49 @@
+package cz.tvrzna.jaxie;
+
+/**
+ * Text, that refers to range of buffer retained by lexer and creates its string
+ * only when it is needed for the first time. Lexer is kept, so text could be
+ * requested by any number of threads, that could create the same string at
+ * once.
+ *
+ * @author michalt
+ */
+class LazyText
+{
+	private final XmlLexer lexer;
+	private final int start;
+	private final int end;
+	private final boolean ascii;
+	private volatile String text;
+
+	/**
+	 * Instantiates a new lazy text from range recorded by lexer.
+	 *
+	 * @param lexer
+	 *          the lexer
+	 */
+	LazyText(XmlLexer lexer)
+	{
+		this.lexer = lexer;
+		this.start = lexer.rangeStart;
+		this.end = lexer.rangeEnd;
+		this.ascii = lexer.rangeAscii;
+	}
+
+	/**
+	 * Creates string of text, that is kept for following calls.
+	 *
+	 * @return the string
+	 */
+	@Override
+	public String toString()
+	{
+		String result = text;
+		if (result == null)
+		{
+			result = lexer.string(start, end, ascii);
+			text = result;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,772 @@
+package cz.tvrzna.jaxie;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parser of documents made of many sibling records, that parses content of
+ * root element in parallel chunks. Chunks are split speculatively in front of
+ * start tags with the same name as the first record. Each chunk must be parsed
+ * as complete sequence of elements, otherwise split was wrong, e.g. inside of
+ * nested element, CDATA or comment, and whole document is parsed sequentially
+ * instead.
+ *
+ * @author michalt
+ */
+abstract class ParallelParser
+{
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+	private static final long MAX_CHUNK_SIZE = 1L << 30;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static final char[] PI_END = "?>".toCharArray();
+	private static final char[] COMMENT_START = "<!--".toCharArray();
+	private static final char[] COMMENT_END = "-->".toCharArray();
+
+	/**
+	 * Creates parser of content.
+	 *
+	 * @param content
+	 *          the content
+	 * @return the parallel parser
+	 */
+	static ParallelParser of(String content)
+	{
+		return new CharParser(content.toCharArray());
+	}
+
+	/**
+	 * Creates parser of remaining bytes of buffer, whose encoding is declared by
+	 * its header, UTF-8 by default.
+	 *
+	 * @param buffer
+	 *          the buffer
+	 * @return the parallel parser
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	static ParallelParser of(ByteBuffer buffer) throws IOException
+	{
+		ByteBuffer buf = buffer.slice();
+		return new ByteParser(buf, ByteXmlLexer.detectCharset(buf));
+	}
+
+	/**
+	 * Creates parser of file, whose chunks are mapped into memory separately,
+	 * so file could be larger than 2 GB. Channel is not closed.
+	 *
+	 * @param channel
+	 *          the channel
+	 * @return the parallel parser
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	static ParallelParser of(FileChannel channel) throws IOException
+	{
+		ByteBuffer head = channel.map(MapMode.READ_ONLY, 0, Math.min(channel.size(), FileParser.WINDOW_SIZE));
+		return new FileParser(channel, ByteXmlLexer.detectCharset(head));
+	}
+
+	/**
+	 * Parses root element with all its content. Content is parsed in parallel,
+	 * if document could be split, otherwise it is parsed sequentially.
+	 *
+	 * @param config
+	 *          the config
+	 * @return the xml element
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	XmlElement parse(Config config) throws IOException
+	{
+		XmlElement root = parseParallel(config);
+		if (root == null)
+		{
+			XmlTokenizer tokenizer = tokenizer();
+			tokenizer.setMaxDepth(config.getMaxDepth());
+			root = Deserializator.parse(tokenizer);
+		}
+		return root;
+	}
+
+	/**
+	 * Parses content of root element in parallel chunks.
+	 *
+	 * @param config
+	 *          the config
+	 * @return the xml element, or <code>null</code> if document could not be
+	 *         split or any split was wrong
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	XmlElement parseParallel(Config config) throws IOException
+	{
+		if (!isSplittable())
+		{
+			return null;
+		}
+		long rootStart = findRoot();
+		long contentStart = rootStart >= 0 ? findTagEnd(rootStart) : -1;
+		long contentEnd = findRootEnd();
+		if (contentStart < 0 || contentEnd < contentStart)
+		{
+			return null;
+		}
+
+		List<Long> lstSplits = split(contentStart, contentEnd);
+		if (lstSplits.size() < 3)
+		{
+			return null;
+		}
+
+		String head = string(0, contentStart - 1);
+		XmlElement root = Deserializator.parse(head.substring(head.startsWith("\uFEFF") ? 1 : 0).concat("/>"));
+		if (root == null || !root.name.equals(string(contentEnd + 2, length()).replace(">", "").trim()))
+		{
+			return null;
+		}
+
+		List<Callable<XmlElement>> lstTasks = new ArrayList<>();
+		for (int i = 1; i < lstSplits.size(); i++)
+		{
+			long start = lstSplits.get(i - 1);
+			long end = lstSplits.get(i);
+			lstTasks.add(() -> {
+				XmlTokenizer tokenizer = tokenizer(start, end);
+				tokenizer.setMaxDepth(config.getMaxDepth());
+				tokenizer.openFragment(root.name);
+				return Deserializator.parseContent(tokenizer, new XmlElement(root.name, null));
+			});
+		}
+
+		try
+		{
+			StringBuilder text = null;
+			for (Future<XmlElement> future : ForkJoinPool.commonPool().invokeAll(lstTasks))
+			{
+				XmlElement chunk = future.get();
+				for (XmlElement child : chunk.lstChildren)
+				{
+					child.parent = root;
+					root.addChild(child);
+				}
+				if (chunk.getValue() != null)
+				{
+					text = text == null ? new StringBuilder(chunk.getValue()) : text.append(chunk.getValue());
+				}
+			}
+			if (text != null)
+			{
+				root.value = text.toString();
+			}
+		}
+		catch (ExecutionException e)
+		{
+			return null;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		return root;
+	}
+
+	/**
+	 * Splits content of root element into chunks in front of start tags, whose
+	 * name is the same as name of the first record.
+	 *
+	 * @param contentStart
+	 *          the content start
+	 * @param contentEnd
+	 *          the content end
+	 * @return the list of splits including both ends of content
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private List<Long> split(long contentStart, long contentEnd) throws IOException
+	{
+		List<Long> lstSplits = new ArrayList<>();
+		lstSplits.add(contentStart);
+
+		long length = contentEnd - contentStart;
+		long count = Math.max(Math.min(length / MIN_CHUNK_SIZE, (long) ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD),
+				(length + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+		char[] recordName = count > 1 ? findRecordName(contentStart, contentEnd) : null;
+		for (long i = 1; recordName != null && i < count; i++)
+		{
+			long target = Math.max(contentStart + length * i / count, lstSplits.get(lstSplits.size() - 1) + 1);
+			long split = findRecord(recordName, target, contentEnd);
+			if (split < 0)
+			{
+				break;
+			}
+			lstSplits.add(split);
+		}
+		lstSplits.add(contentEnd);
+
+		for (int i = 1; i < lstSplits.size(); i++)
+		{
+			if (lstSplits.get(i) - lstSplits.get(i - 1) > MAX_CHUNK_SIZE)
+			{
+				lstSplits.clear();
+				break;
+			}
+		}
+		return lstSplits;
+	}
+
+	/**
+	 * Finds start of root element, skipping all declarations, processing
+	 * instructions and comments in front of it.
+	 *
+	 * @return the index of root element, or <code>-1</code> if it was not found
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private long findRoot() throws IOException
+	{
+		long i = indexOf('<', 0, length());
+		while (i >= 0)
+		{
+			int c = charAt(i + 1);
+			if (c == '?')
+			{
+				i = skipPast(PI_END, i);
+			}
+			else if (c == '!' && startsWith(COMMENT_START, i))
+			{
+				i = skipPast(COMMENT_END, i);
+			}
+			else if (c == '!')
+			{
+				i = skipDeclaration(i);
+			}
+			else
+			{
+				return isNameStart(c) ? i : -1;
+			}
+			i = i >= 0 ? indexOf('<', i, length()) : -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds end of start tag.
+	 *
+	 * @param start
+	 *          the start of tag
+	 * @return the index behind tag, or <code>-1</code> if tag was not found or
+	 *         if it is empty element
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private long findTagEnd(long start) throws IOException
+	{
+		int quote = -1;
+		for (long i = start + 1; i < length(); i++)
+		{
+			int c = charAt(i);
+			if (quote >= 0)
+			{
+				quote = c == quote ? -1 : quote;
+			}
+			else if (c == '"' || c == '\'')
+			{
+				quote = c;
+			}
+			else if (c == '>')
+			{
+				return charAt(i - 1) == '/' ? -1 : i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds end tag of root element, that could be followed only by whitespace.
+	 *
+	 * @return the index of end tag, or <code>-1</code> if it was not found
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private long findRootEnd() throws IOException
+	{
+		long i = length() - 1;
+		while (i >= 0 && XmlLexer.isWhitespace(charAt(i)))
+		{
+			i--;
+		}
+		if (i < 0 || charAt(i) != '>')
+		{
+			return -1;
+		}
+		while (i >= 0 && charAt(i) != '<')
+		{
+			i--;
+		}
+		return i >= 0 && charAt(i + 1) == '/' ? i : -1;
+	}
+
+	/**
+	 * Finds name of the first element in content of root element.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the record name, or <code>null</code> if it was not found
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private char[] findRecordName(long start, long end) throws IOException
+	{
+		long i = indexOf('<', start, end);
+		while (i >= 0 && !isNameStart(charAt(i + 1)))
+		{
+			i = indexOf('<', i + 1, end);
+		}
+		if (i < 0)
+		{
+			return null;
+		}
+		StringBuilder sb = new StringBuilder("<");
+		for (long j = i + 1; j < end && !XmlLexer.isNameEnd(charAt(j)); j++)
+		{
+			sb.append((char) charAt(j));
+		}
+		return sb.toString().toCharArray();
+	}
+
+	/**
+	 * Finds start tag of record.
+	 *
+	 * @param recordName
+	 *          the record name including <code>&lt;</code>
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the index of record, or <code>-1</code> if it was not found
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private long findRecord(char[] recordName, long start, long end) throws IOException
+	{
+		for (long i = indexOf('<', start, end); i >= 0; i = indexOf('<', i + 1, end))
+		{
+			if (startsWith(recordName, i) && XmlLexer.isNameEnd(charAt(i + recordName.length)))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips document type declaration, including its internal subset.
+	 *
+	 * @param start
+	 *          the start
+	 * @return the index behind declaration, or <code>-1</code> if it was not
+	 *         terminated
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private long skipDeclaration(long start) throws IOException
+	{
+		int quote = -1;
+		int brackets = 0;
+		for (long i = start + 2; i < length(); i++)
+		{
+			int c = charAt(i);
+			if (quote >= 0)
+			{
+				quote = c == quote ? -1 : quote;
+			}
+			else if (c == '"' || c == '\'')
+			{
+				quote = c;
+			}
+			else if (c == '[')
+			{
+				brackets++;
+			}
+			else if (c == ']')
+			{
+				brackets--;
+			}
+			else if (c == '>' && brackets <= 0)
+			{
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips past the sequence.
+	 *
+	 * @param seq
+	 *          the seq
+	 * @param start
+	 *          the start
+	 * @return the index behind sequence, or <code>-1</code> if it was not found
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private long skipPast(char[] seq, long start) throws IOException
+	{
+		for (long i = indexOf(seq[0], start, length()); i >= 0; i = indexOf(seq[0], i + 1, length()))
+		{
+			if (startsWith(seq, i))
+			{
+				return i + seq.length;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds index of character.
+	 *
+	 * @param c
+	 *          the c
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the index, or <code>-1</code> if character was not found
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private long indexOf(char c, long start, long end) throws IOException
+	{
+		for (long i = start; i < end; i++)
+		{
+			if (charAt(i) == c)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if sequence is at index.
+	 *
+	 * @param seq
+	 *          the seq
+	 * @param index
+	 *          the index
+	 * @return true, if successful
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private boolean startsWith(char[] seq, long index) throws IOException
+	{
+		for (int i = 0; i < seq.length; i++)
+		{
+			if (charAt(index + i) != seq[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if character could start name of element.
+	 *
+	 * @param c
+	 *          the c
+	 * @return true, if is name start
+	 */
+	private static boolean isNameStart(int c)
+	{
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' || c >= 0x80;
+	}
+
+	/**
+	 * Checks if document could be split on ASCII characters.
+	 *
+	 * @return true, if is splittable
+	 */
+	abstract boolean isSplittable();
+
+	/**
+	 * Gets the length of document.
+	 *
+	 * @return the length
+	 */
+	abstract long length();
+
+	/**
+	 * Gets the ASCII character at index.
+	 *
+	 * @param index
+	 *          the index
+	 * @return the character, or <code>-1</code> if index is out of document
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract int charAt(long index) throws IOException;
+
+	/**
+	 * Gets the string of part of document.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the string
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract String string(long start, long end) throws IOException;
+
+	/**
+	 * Creates tokenizer of whole document.
+	 *
+	 * @return the xml tokenizer
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract XmlTokenizer tokenizer() throws IOException;
+
+	/**
+	 * Creates tokenizer of part of document.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the xml tokenizer
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract XmlTokenizer tokenizer(long start, long end) throws IOException;
+
+	/**
+	 * Parser of characters.
+	 *
+	 * @author michalt
+	 */
+	private static final class CharParser extends ParallelParser
+	{
+		private final char[] buf;
+
+		/**
+		 * Instantiates a new char parser.
+		 *
+		 * @param buf
+		 *          the buffer
+		 */
+		private CharParser(char[] buf)
+		{
+			this.buf = buf;
+		}
+
+		@Override
+		boolean isSplittable()
+		{
+			return true;
+		}
+
+		@Override
+		long length()
+		{
+			return buf.length;
+		}
+
+		@Override
+		int charAt(long index)
+		{
+			return index >= 0 && index < buf.length ? buf[(int) index] : -1;
+		}
+
+		@Override
+		String string(long start, long end)
+		{
+			return new String(buf, (int) start, (int) (end - start));
+		}
+
+		@Override
+		XmlTokenizer tokenizer()
+		{
+			return new XmlTokenizer(new CharXmlLexer(buf, 0, buf.length));
+		}
+
+		@Override
+		XmlTokenizer tokenizer(long start, long end)
+		{
+			return new XmlTokenizer(new CharXmlLexer(buf, (int) start, (int) end));
+		}
+	}
+
+	/**
+	 * Parser of bytes in buffer.
+	 *
+	 * @author michalt
+	 */
+	private static final class ByteParser extends ParallelParser
+	{
+		private final ByteBuffer buf;
+		private final Charset charset;
+
+		/**
+		 * Instantiates a new byte parser.
+		 *
+		 * @param buf
+		 *          the buffer, that is indexed from <code>0</code>
+		 * @param charset
+		 *          the charset
+		 */
+		private ByteParser(ByteBuffer buf, Charset charset)
+		{
+			this.buf = buf;
+			this.charset = charset;
+		}
+
+		@Override
+		boolean isSplittable()
+		{
+			return ByteXmlLexer.isAsciiCompatible(charset);
+		}
+
+		@Override
+		long length()
+		{
+			return buf.limit();
+		}
+
+		@Override
+		int charAt(long index)
+		{
+			return index >= 0 && index < buf.limit() ? buf.get((int) index) & 0xFF : -1;
+		}
+
+		@Override
+		String string(long start, long end)
+		{
+			return charset.decode(slice(start, end)).toString();
+		}
+
+		@Override
+		XmlTokenizer tokenizer() throws IOException
+		{
+			return new XmlTokenizer(buf.duplicate());
+		}
+
+		@Override
+		XmlTokenizer tokenizer(long start, long end)
+		{
+			return new XmlTokenizer(ByteXmlLexer.of(slice(start, end), charset));
+		}
+
+		/**
+		 * Gets the part of buffer.
+		 *
+		 * @param start
+		 *          the start
+		 * @param end
+		 *          the end
+		 * @return the byte buffer
+		 */
+		private ByteBuffer slice(long start, long end)
+		{
+			ByteBuffer dup = buf.duplicate();
+			dup.limit((int) end);
+			dup.position((int) start);
+			return dup;
+		}
+	}
+
+	/**
+	 * Parser of file, whose parts are mapped into memory.
+	 *
+	 * @author michalt
+	 */
+	private static final class FileParser extends ParallelParser
+	{
+		private static final int WINDOW_SIZE = 64 * 1024;
+
+		private final FileChannel channel;
+		private final Charset charset;
+		private final long size;
+		private ByteBuffer window;
+		private long windowStart = -1;
+
+		/**
+		 * Instantiates a new file parser.
+		 *
+		 * @param channel
+		 *          the channel
+		 * @param charset
+		 *          the charset
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private FileParser(FileChannel channel, Charset charset) throws IOException
+		{
+			this.channel = channel;
+			this.charset = charset;
+			this.size = channel.size();
+		}
+
+		@Override
+		boolean isSplittable()
+		{
+			return ByteXmlLexer.isAsciiCompatible(charset);
+		}
+
+		@Override
+		long length()
+		{
+			return size;
+		}
+
+		@Override
+		int charAt(long index) throws IOException
+		{
+			if (index < 0 || index >= size)
+			{
+				return -1;
+			}
+			if (windowStart < 0 || index < windowStart || index >= windowStart + window.limit())
+			{
+				windowStart = index - index % WINDOW_SIZE;
+				window = channel.map(MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+			}
+			return window.get((int) (index - windowStart)) & 0xFF;
+		}
+
+		@Override
+		String string(long start, long end) throws IOException
+		{
+			return charset.decode(channel.map(MapMode.READ_ONLY, start, end - start)).toString();
+		}
+
+		@Override
+		XmlTokenizer tokenizer() throws IOException
+		{
+			return new XmlTokenizer(channel);
+		}
+
+		@Override
+		XmlTokenizer tokenizer(long start, long end) throws IOException
+		{
+			return new XmlTokenizer(ByteXmlLexer.of(channel.map(MapMode.READ_ONLY, start, end - start), charset));
+		}
+	}
+}
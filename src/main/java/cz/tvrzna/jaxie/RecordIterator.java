@@ -0,0 +1,111 @@
+package cz.tvrzna.jaxie;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator of records, that are repeated elements with defined name anywhere in
+ * document. Each record is bound to object only when it is requested and
+ * nothing else is kept in memory, so memory use does not depend on size of
+ * document. Records nested in other records are bound as their content.
+ *
+ * @author michalt
+ *
+ * @param <T>
+ *          the generic type
+ */
+class RecordIterator<T> implements Iterator<T>
+{
+	private final XmlTokenizer tokenizer;
+	private final String elementName;
+	private final Class<T> clazz;
+	private final Config config;
+	private T next;
+	private boolean finished = false;
+
+	/**
+	 * Instantiates a new record iterator.
+	 *
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param elementName
+	 *          the element name
+	 * @param clazz
+	 *          the clazz
+	 * @param config
+	 *          the config
+	 */
+	RecordIterator(XmlTokenizer tokenizer, String elementName, Class<T> clazz, Config config)
+	{
+		this.tokenizer = tokenizer;
+		this.elementName = elementName.intern();
+		this.clazz = clazz;
+		this.config = config;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (next == null && !finished)
+		{
+			try
+			{
+				next = readNext();
+			}
+			catch (Exception e)
+			{
+				finished = true;
+				throw new RuntimeException(e);
+			}
+			finished = next == null;
+		}
+		return next != null;
+	}
+
+	@Override
+	public T next()
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		T result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * Reads next record. Record, that could not be bound to object, is not
+	 * skipped, but it fails the iteration, so no record is lost silently.
+	 *
+	 * @return the next record, or <code>null</code> if document has ended
+	 * @throws Exception
+	 *           the exception
+	 */
+	private T readNext() throws Exception
+	{
+		XmlEvent event;
+		while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
+		{
+			if (event == XmlEvent.START_ELEMENT && tokenizer.getName() == elementName)
+			{
+				T result;
+				if (config.isStreaming())
+				{
+					result = StreamDeserializationMapper.deserializeElement(tokenizer, clazz, null, config);
+				}
+				else
+				{
+					result = DeserializationMapper.deserialize(Deserializator.parseElement(tokenizer), clazz, config);
+				}
+				if (result == null)
+				{
+					throw new IOException("Record " + elementName + " could not be bound to " + clazz.getName() + ".");
+				}
+				return result;
+			}
+		}
+		return null;
+	}
+}
@@ -1,17 +1,14 @@
 package cz.tvrzna.jaxie;
 
-import java.lang.reflect.Field;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-
-import cz.tvrzna.jaxie.annotations.JaxieAdapter;
-import cz.tvrzna.jaxie.annotations.JaxieAttribute;
-import cz.tvrzna.jaxie.annotations.JaxieElement;
-import cz.tvrzna.jaxie.annotations.JaxieWrapper;
+import java.util.stream.BaseStream;
 
 /**
  * The Class SerializationMapper.
@@ -41,17 +38,42 @@ public class SerializationMapper
 			return null;
 		}
 
-		String name = "root";
-		JaxieElement j = o.getClass().getAnnotation(JaxieElement.class);
-		if (j != null && !j.value().isEmpty())
+		XmlElementOutput out = new XmlElementOutput();
+		serialize(o, out, config);
+		return out.getRoot();
+	}
+
+	/**
+	 * Serialize object into output. Object graph is walked on explicit stack of
+	 * frames instead of recursion, so its depth is limited only by maximal depth
+	 * from config.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param o
+	 *          the o
+	 * @param out
+	 *          the out
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected static <T> void serialize(T o, XmlOutput out, Config config) throws Exception
+	{
+		if (o == null)
 		{
-			name = j.value();
+			return;
 		}
-		return processObject(o, name, null, config);
+
+		FrameStack stack = new FrameStack(0);
+		int depth = processObject(o, BindingPlan.of(o.getClass()).getRootName(), out, stack, 0, config);
+		process(out, stack, depth, config);
 	}
 
 	/**
-	 * To xml element.
+	 * Serialize value into output as element with defined name, that is nested
+	 * in elements of defined depth.
 	 *
 	 * @param <T>
 	 *          the generic type
@@ -59,50 +81,257 @@ public class SerializationMapper
 	 *          the o
 	 * @param name
 	 *          the name
-	 * @param parent
-	 *          the parent
+	 * @param out
+	 *          the out
+	 * @param depth
+	 *          the depth
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected static <T> void serialize(T o, String name, XmlOutput out, int depth, Config config) throws Exception
+	{
+		process(o, name, out, depth, new FrameStack(0), config);
+	}
+
+	/**
+	 * Writes value as element or elements into output, with its whole content.
+	 *
+	 * @param o
+	 *          the o
+	 * @param name
+	 *          the name
+	 * @param out
+	 *          the out
+	 * @param depth
+	 *          the depth
+	 * @param stack
+	 *          the empty stack
 	 * @param config
 	 *          the config
-	 * @return the xml element
 	 * @throws Exception
 	 *           the exception
 	 */
-	private static <T> XmlElement toXmlElement(T o, String name, XmlElement parent, Config config) throws Exception
+	private static void process(Object o, String name, XmlOutput out, int depth, FrameStack stack, Config config) throws Exception
+	{
+		process(out, stack, processValue(o, name, out, stack, depth, config), config);
+	}
+
+	/**
+	 * Processes frames of stack until it is empty.
+	 *
+	 * @param out
+	 *          the out
+	 * @param stack
+	 *          the stack
+	 * @param depth
+	 *          the depth
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void process(XmlOutput out, FrameStack stack, int depth, Config config) throws Exception
+	{
+		try
+		{
+			while (!stack.isEmpty())
+			{
+				Frame frame = stack.peek();
+				if (frame.kind == Frame.END)
+				{
+					stack.pop();
+					out.endElement();
+					depth--;
+				}
+				else if (frame.kind == Frame.VALUE)
+				{
+					stack.pop();
+					depth = processValue(frame.owner, frame.name, out, stack, depth, config);
+				}
+				else if (!frame.iterator.hasNext())
+				{
+					stack.pop();
+					if (frame.owner instanceof BaseStream)
+					{
+						((BaseStream<?, ?>) frame.owner).close();
+					}
+				}
+				else if (frame.kind == Frame.FIELDS)
+				{
+					depth = processField(frame.owner, (FieldBinding) frame.iterator.next(), out, stack, depth, config);
+				}
+				else if (frame.kind == Frame.ENTRIES)
+				{
+					depth = processEntry((Map.Entry<?, ?>) frame.iterator.next(), out, stack, depth, config);
+				}
+				else
+				{
+					depth = processValue(frame.iterator.next(), frame.name, out, stack, depth, config);
+				}
+			}
+		}
+		finally
+		{
+			closeStreams(stack);
+		}
+	}
+
+	/**
+	 * Closes streams of frames, that remain on stack, when serialization has
+	 * failed.
+	 *
+	 * @param stack
+	 *          the stack
+	 */
+	private static void closeStreams(FrameStack stack)
+	{
+		for (Frame frame : stack)
+		{
+			if (frame.owner instanceof BaseStream)
+			{
+				((BaseStream<?, ?>) frame.owner).close();
+			}
+		}
+		stack.clear();
+	}
+
+	/**
+	 * Writes value as element or elements into output. Simple values are written
+	 * immediately, complex values are pushed to stack.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param o
+	 *          the o
+	 * @param name
+	 *          the name
+	 * @param out
+	 *          the out
+	 * @param stack
+	 *          the stack
+	 * @param depth
+	 *          the depth
+	 * @param config
+	 *          the config
+	 * @return the depth of opened elements
+	 * @throws Exception
+	 *           the exception
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> int processValue(T o, String name, XmlOutput out, FrameStack stack, int depth, Config config) throws Exception
 	{
 		if (o == null)
 		{
-			return null;
+			return depth;
+		}
+		Adapter<Object> adapterHandler = (Adapter<Object>) config.getAdapter(o.getClass());
+		if (adapterHandler != null)
+		{
+			writeText(adapterHandler.serialize(o), name, out, depth, config);
+			return depth;
 		}
-		else if ((CommonUtils.SIMPLE_CLASSES.contains(o.getClass()) || Enum.class.isAssignableFrom(o.getClass())) && !o.getClass().isArray())
+		else if ((CommonUtils.SIMPLE_CLASSES.contains(o.getClass()) || DateCodec.isDate(o.getClass()) || Enum.class.isAssignableFrom(o.getClass())) && !o.getClass().isArray())
 		{
-			XmlElement el = new XmlElement(name, parent);
-			el.setTextContent(serializeValue(o, config));
-			return el;
+			writeText(serializeValue(o, config), name, out, depth, config);
+			return depth;
 		}
 		else if (Map.class.isAssignableFrom(o.getClass()))
 		{
-			return processMap(o, name, parent, config);
+			depth = open(name, out, depth, config);
+			push(stack, Frame.CLOSE, config);
+			push(stack, new Frame(Frame.ENTRIES, null, ((Map<?, ?>) o).entrySet().iterator(), null), config);
+			return depth;
 		}
 		else if (Collection.class.isAssignableFrom(o.getClass()))
 		{
-			processArray(((Collection<?>) o).toArray(), name, parent, config);
-			return null;
+			Collection<?> collection = (Collection<?>) o;
+			if (isParallel(collection.size(), stack, config))
+			{
+				processParallel(collection instanceof List ? (List<?>) collection : new ArrayList<>(collection), name, out, stack, depth, config);
+				return depth;
+			}
+			push(stack, new Frame(Frame.ITEMS, null, collection.iterator(), name), config);
+			return depth;
 		}
 		else if (o.getClass().isArray())
 		{
-			if (CommonUtils.PRIMITIVE_CLASSES.contains(o.getClass().getComponentType()))
+			Object[] array = CommonUtils.PRIMITIVE_CLASSES.contains(o.getClass().getComponentType()) ? CommonUtils.convertPrimitiveArrayToObjects(o) : (Object[]) o;
+			if (isParallel(array.length, stack, config))
 			{
-				processArray(CommonUtils.convertPrimitiveArrayToObjects(o), name, parent, config);
-				return null;
+				processParallel(Arrays.asList(array), name, out, stack, depth, config);
+				return depth;
 			}
-			processArray((Object[]) o, name, parent, config);
-			return null;
+			push(stack, new Frame(Frame.ITEMS, null, Arrays.asList(array).iterator(), name), config);
+			return depth;
+		}
+		else if (o instanceof Iterator || o instanceof BaseStream)
+		{
+			Iterator<?> iterator = o instanceof Iterator ? (Iterator<?>) o : ((BaseStream<?, ?>) o).iterator();
+			try
+			{
+				push(stack, new Frame(Frame.ITEMS, o, iterator, name), config);
+			}
+			catch (IOException e)
+			{
+				if (o instanceof BaseStream)
+				{
+					((BaseStream<?, ?>) o).close();
+				}
+				throw e;
+			}
+			return depth;
 		}
-		return processObject(o, name, parent, config);
+		return processObject(o, name, out, stack, depth, config);
+	}
+
+	/**
+	 * Checks if collection of defined size should be written in parallel.
+	 * Collections nested in items, that are already written in parallel, are
+	 * written sequentially.
+	 *
+	 * @param size
+	 *          the size
+	 * @param stack
+	 *          the stack
+	 * @param config
+	 *          the config
+	 * @return true, if is parallel
+	 */
+	private static boolean isParallel(int size, FrameStack stack, Config config)
+	{
+		return config.getParallelThreshold() > 0 && size >= config.getParallelThreshold() && !stack.isNested();
+	}
+
+	/**
+	 * Writes items in parallel chunks, that are appended to output in original
+	 * order.
+	 *
+	 * @param items
+	 *          the items
+	 * @param name
+	 *          the name
+	 * @param out
+	 *          the out
+	 * @param stack
+	 *          the stack
+	 * @param depth
+	 *          the depth
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void processParallel(List<?> items, String name, XmlOutput out, FrameStack stack, int depth, Config config) throws Exception
+	{
+		int base = stack.getNesting() + 1;
+		out.writeParallel(items, (chunk, item) -> process(item, name, chunk, depth, new FrameStack(base), config));
 	}
 
 	/**
-	 * Process object.
+	 * Process object. Attributes are written immediately, elements are pushed to
+	 * stack.
 	 *
 	 * @param <T>
 	 *          the generic type
@@ -110,130 +339,220 @@ public class SerializationMapper
 	 *          the o
 	 * @param name
 	 *          the name
-	 * @param parent
-	 *          the parent
+	 * @param out
+	 *          the out
+	 * @param stack
+	 *          the stack
+	 * @param depth
+	 *          the depth
 	 * @param config
 	 *          the config
-	 * @return the xml element
+	 * @return the depth of opened elements
 	 * @throws Exception
 	 *           the exception
 	 */
-	private static <T> XmlElement processObject(T o, String name, XmlElement parent, Config config) throws Exception
+	private static <T> int processObject(T o, String name, XmlOutput out, FrameStack stack, int depth, Config config) throws Exception
 	{
-		XmlElement root = new XmlElement(name, parent);
+		BindingPlan plan = BindingPlan.of(o.getClass());
+		depth = open(name, out, depth, config);
 
-		for (Field f : CommonUtils.getFields(o.getClass()))
+		for (FieldBinding f : plan.getAttributes())
 		{
-			processField(o, root, f, config);
+			processField(o, f, out, stack, depth, config);
 		}
 
-		return root;
+		push(stack, Frame.CLOSE, config);
+		push(stack, new Frame(Frame.FIELDS, o, plan.getElements().iterator(), null), config);
+		return depth;
 	}
 
+	/**
+	 * Process field.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param <A>
+	 *          the generic type
+	 * @param o
+	 *          the o
+	 * @param f
+	 *          the f
+	 * @param out
+	 *          the out
+	 * @param stack
+	 *          the stack
+	 * @param depth
+	 *          the depth
+	 * @param config
+	 *          the config
+	 * @return the depth of opened elements
+	 * @throws Exception
+	 *           the exception
+	 */
 	@SuppressWarnings("unchecked")
-	private static <T, A> void processField(T o, XmlElement root, Field f, Config config) throws Exception
+	private static <T, A> int processField(T o, FieldBinding f, XmlOutput out, FrameStack stack, int depth, Config config) throws Exception
 	{
-		f.setAccessible(true);
-		Object value = f.get(o);
+		Object value = f.isPrimitive() ? serializePrimitive(o, f) : f.get(o);
 		if (value == null)
 		{
-			return;
+			return depth;
 		}
 
-		JaxieAdapter adapter = f.getAnnotation(JaxieAdapter.class);
-		Adapter<A> adapterHandler = null;
-		if (adapter != null)
+		Adapter<A> adapterHandler = (Adapter<A>) f.getAdapter();
+		if (f.isAttribute())
 		{
-			adapterHandler = (Adapter<A>) adapter.value().getDeclaredConstructor().newInstance();
+			if (adapterHandler == null && !f.isPrimitive())
+			{
+				adapterHandler = (Adapter<A>) config.getAdapter(value.getClass());
+			}
+			out.attribute(f.getName(), adapterHandler != null ? adapterHandler.serialize((A) value) : serializeValue(value, config));
+			return depth;
 		}
 
-		JaxieAttribute fAttr = f.getAnnotation(JaxieAttribute.class);
-		if (fAttr != null)
+		if (f.isIterable())
 		{
-			root.addAttribute(fAttr.value().isEmpty() ? f.getName() : fAttr.value(),
-					value != null ? (adapterHandler != null ? adapterHandler.serialize((A) value) : serializeValue(value, config)) : null);
-			return;
+			value = ((Iterable<?>) value).iterator();
 		}
-
-		XmlElement wrapper = null;
-		JaxieWrapper fWrapper = f.getAnnotation(JaxieWrapper.class);
-		if (fWrapper != null)
+		if (f.getWrapper() != null)
 		{
-			wrapper = new XmlElement(fWrapper.value(), root);
-			root.add(wrapper);
+			depth = open(f.getWrapper(), out, depth, config);
+			push(stack, Frame.CLOSE, config);
 		}
-
-		String fName = f.getName();
-		JaxieElement fEl = f.getAnnotation(JaxieElement.class);
-		if (fEl != null && !fEl.value().isEmpty())
+		if (adapterHandler != null)
 		{
-			fName = fEl.value();
+			writeText(adapterHandler.serialize((A) value), f.getName(), out, depth, config);
+			return depth;
 		}
+		return processValue(value, f.getName(), out, stack, depth, config);
+	}
 
-		XmlElement child = toXmlElement(adapterHandler != null ? adapterHandler.serialize((A) value) : value, fName, (wrapper != null ? wrapper : root), config);
-		if (child != null)
-		{
-			(wrapper != null ? wrapper : root).add(child);
-		}
+	/**
+	 * Process entry of map. Key is written first, value is pushed to stack.
+	 *
+	 * @param entry
+	 *          the entry
+	 * @param out
+	 *          the out
+	 * @param stack
+	 *          the stack
+	 * @param depth
+	 *          the depth
+	 * @param config
+	 *          the config
+	 * @return the depth of opened elements
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static int processEntry(Map.Entry<?, ?> entry, XmlOutput out, FrameStack stack, int depth, Config config) throws Exception
+	{
+		depth = open("entry", out, depth, config);
+		push(stack, Frame.CLOSE, config);
+		push(stack, new Frame(Frame.VALUE, entry.getValue(), null, "value"), config);
+		return processValue(entry.getKey(), "key", out, stack, depth, config);
 	}
 
 	/**
-	 * Process map.
+	 * Writes element with text content. Nothing is written, if text is
+	 * <code>null</code>.
 	 *
-	 * @param map
-	 *          the map
+	 * @param text
+	 *          the text
 	 * @param name
 	 *          the name
-	 * @param parent
-	 *          the parent
+	 * @param out
+	 *          the out
+	 * @param depth
+	 *          the depth
 	 * @param config
 	 *          the config
-	 * @return the xml element
-	 * @throws Exception
-	 *           the exception
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
 	 */
-	private static XmlElement processMap(Object map, String name, XmlElement parent, Config config) throws Exception
+	private static void writeText(String text, String name, XmlOutput out, int depth, Config config) throws IOException
 	{
-		XmlElement root = new XmlElement(name, parent);
-		for (final Map.Entry<?, ?> entry : ((Map<?, ?>) map).entrySet())
+		if (text != null)
 		{
-			XmlElement el = new XmlElement("entry", root);
-
-			XmlElement key = toXmlElement(entry.getKey(), "key", el, config);
-			el.add(key);
-
-			XmlElement value = toXmlElement(entry.getValue(), "value", el, config);
-			el.add(value);
-
-			root.add(el);
+			open(name, out, depth, config);
+			out.text(text);
+			out.endElement();
 		}
-		return root;
 	}
 
 	/**
-	 * Process array.
+	 * Opens new element, if maximal depth is not exceeded.
 	 *
-	 * @param array
-	 *          the array
 	 * @param name
 	 *          the name
-	 * @param parent
-	 *          the parent
+	 * @param out
+	 *          the out
+	 * @param depth
+	 *          the depth
 	 * @param config
 	 *          the config
+	 * @return the depth of opened elements
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private static int open(String name, XmlOutput out, int depth, Config config) throws IOException
+	{
+		if (depth >= config.getMaxDepth())
+		{
+			throw new IOException("Maximal depth " + config.getMaxDepth() + " of elements exceeded.");
+		}
+		out.startElement(name);
+		return depth + 1;
+	}
+
+	/**
+	 * Pushes frame to stack. Each level of elements holds only few frames, so
+	 * stack is limited by multiple of maximal depth, which also stops
+	 * collections containing themselves.
+	 *
+	 * @param stack
+	 *          the stack
+	 * @param frame
+	 *          the frame
+	 * @param config
+	 *          the config
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private static void push(FrameStack stack, Frame frame, Config config) throws IOException
+	{
+		if (stack.getNesting() >= config.getMaxDepth() * 4)
+		{
+			throw new IOException("Maximal depth " + config.getMaxDepth() + " of elements exceeded.");
+		}
+		stack.push(frame);
+	}
+
+	/**
+	 * Serialize value of primitive field without boxing.
+	 *
+	 * @param o
+	 *          the o
+	 * @param f
+	 *          the f
+	 * @return the string
 	 * @throws Exception
 	 *           the exception
 	 */
-	private static void processArray(Object[] array, String name, XmlElement parent, Config config) throws Exception
+	private static String serializePrimitive(Object o, FieldBinding f) throws Exception
 	{
-		for (Object obj : array)
+		FieldAccessor accessor = f.getAccessor();
+		if (int.class.equals(f.getType()))
 		{
-			XmlElement el = toXmlElement(obj, name, parent, config);
-			if (el != null)
-			{
-				parent.add(el);
-			}
+			return Integer.toString(accessor.getInt(o));
 		}
+		else if (long.class.equals(f.getType()))
+		{
+			return Long.toString(accessor.getLong(o));
+		}
+		else if (double.class.equals(f.getType()))
+		{
+			return Double.toString(accessor.getDouble(o));
+		}
+		return Boolean.toString(accessor.getBoolean(o));
 	}
 
 	/**
@@ -257,11 +576,95 @@ public class SerializationMapper
 		{
 			return value.toString().replace(",", ".");
 		}
-		else if (value instanceof Date)
+		else if (DateCodec.isDate(value.getClass()))
 		{
-			DateFormat df = Optional.ofNullable(config.getDateFormat()).orElse(new SimpleDateFormat(CommonUtils.DATE_FORMAT_XML));
-			return df.format(value);
+			return DateCodec.format(value, config);
 		}
 		return value.toString();
 	}
+
+	/**
+	 * Stack of frames. Stack of item written in parallel continues nesting of
+	 * stack, that has written its collection, so maximal depth is checked
+	 * across all threads.
+	 *
+	 * @author michalt
+	 */
+	private static final class FrameStack extends ArrayDeque<Frame>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int base;
+
+		/**
+		 * Instantiates a new frame stack.
+		 *
+		 * @param base
+		 *          the nesting of stack, that has started this stack
+		 */
+		private FrameStack(int base)
+		{
+			this.base = base;
+		}
+
+		/**
+		 * Gets the nesting of frames including all parent stacks.
+		 *
+		 * @return the nesting
+		 */
+		private int getNesting()
+		{
+			return base + size();
+		}
+
+		/**
+		 * Checks if stack is started by another stack.
+		 *
+		 * @return true, if is nested
+		 */
+		private boolean isNested()
+		{
+			return base > 0;
+		}
+	}
+
+	/**
+	 * Frame of serialization stack, that holds remaining work of one level.
+	 *
+	 * @author michalt
+	 */
+	private static final class Frame
+	{
+		private static final int END = 0;
+		private static final int VALUE = 1;
+		private static final int FIELDS = 2;
+		private static final int ITEMS = 3;
+		private static final int ENTRIES = 4;
+		private static final Frame CLOSE = new Frame(END, null, null, null);
+
+		private final int kind;
+		private final Object owner;
+		private final Iterator<?> iterator;
+		private final String name;
+
+		/**
+		 * Instantiates a new frame.
+		 *
+		 * @param kind
+		 *          the kind
+		 * @param owner
+		 *          the owner of fields, or value
+		 * @param iterator
+		 *          the iterator of fields, items or entries
+		 * @param name
+		 *          the name of items or value
+		 */
+		private Frame(int kind, Object owner, Iterator<?> iterator, String name)
+		{
+			this.kind = kind;
+			this.owner = owner;
+			this.iterator = iterator;
+			this.name = name;
+		}
+	}
 }
@@ -1,9 +1,10 @@
 package cz.tvrzna.jaxie;
 
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Arrays;
 
 /**
  * The Class Serializator.
@@ -12,8 +13,6 @@ import java.io.Writer;
  */
 public class Serializator
 {
-	private static final String XML_INFO = "<?xml version=\"1.0\" encoding=\"utf-8\"?>";
-
 	/**
 	 * Instantiates a new serializator.
 	 */
@@ -42,7 +41,8 @@ public class Serializator
 	}
 
 	/**
-	 * Serialize <code>object</code> to <code>OutputStream</code>.
+	 * Serialize <code>object</code> to <code>OutputStream</code> encoded in
+	 * charset from config.
 	 *
 	 * @param os
 	 *          the os
@@ -57,9 +57,9 @@ public class Serializator
 	 */
 	protected static void serialize(OutputStream os, XmlElement element, int indent, Config config) throws Exception
 	{
-		OutputStreamWriter sw = new OutputStreamWriter(os);
-		serialize(sw, element, indent, config);
-		sw.close();
+		ByteWriter w = new ByteWriter(os, config.getCharset());
+		serialize(w, element, indent, config);
+		w.close();
 	}
 
 	/**
@@ -78,67 +78,92 @@ public class Serializator
 	 */
 	private static void serialize(Writer w, XmlElement object, int indentCount, Config config) throws Exception
 	{
-		String indent = "";
-		String childIndent = "";
-
+		XmlWriter writer = new XmlWriter(w, indentCount, config);
 		if (object.isDisplayXmlInfo() && object.parent == null)
 		{
-			w.append(XML_INFO);
-			if (config.isPrettyPrint())
-			{
-				w.append(config.getPrettyLineSymbol());
-			}
+			writer.writeXmlInfo();
 		}
+		write(writer, object, 0, config);
+	}
+
+	/**
+	 * Writes <code>XmlElement</code> with all its children into writer. Tree is
+	 * walked on explicit stack of open elements, so its depth is limited only by
+	 * maximal depth from config. Children of elements, that have at least
+	 * parallel threshold from config children, are written in parallel chunks.
+	 *
+	 * @param writer
+	 *          the writer
+	 * @param object
+	 *          the object
+	 * @param baseDepth
+	 *          the depth of parent of object
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void write(XmlWriter writer, XmlElement object, int baseDepth, Config config) throws Exception
+	{
+		XmlElement[] stack = new XmlElement[16];
+		int[] positions = new int[16];
+		int depth = 0;
 
-		if (config.isPrettyPrint())
+		start(writer, object);
+		stack[depth++] = object;
+		while (depth > 0)
 		{
-			StringBuilder strIndent = new StringBuilder();
-			if (indentCount > 0)
+			XmlElement current = stack[depth - 1];
+			int position = positions[depth - 1];
+			if (position < current.lstChildren.size())
 			{
-				strIndent.append(config.getPrettyLineSymbol());
+				positions[depth - 1]++;
+				if (baseDepth + depth >= config.getMaxDepth())
+				{
+					throw new IOException("Maximal depth " + config.getMaxDepth() + " of elements exceeded.");
+				}
+				if (position == 0 && config.getParallelThreshold() > 0 && current.lstChildren.size() >= config.getParallelThreshold())
+				{
+					positions[depth - 1] = current.lstChildren.size();
+					int parentDepth = baseDepth + depth;
+					writer.writeParallel(current.lstChildren, (chunk, child) -> write((XmlWriter) chunk, child, parentDepth, config));
+					continue;
+				}
+				if (depth == stack.length)
+				{
+					stack = Arrays.copyOf(stack, depth * 2);
+					positions = Arrays.copyOf(positions, depth * 2);
+				}
+				XmlElement child = current.lstChildren.get(position);
+				start(writer, child);
+				stack[depth] = child;
+				positions[depth++] = 0;
 			}
-			for (int i = 0; i < indentCount; i++)
+			else
 			{
-				strIndent.append(config.getPrettyIndentSymbol());
+				writer.text(current.getValue());
+				writer.endElement();
+				stack[--depth] = null;
 			}
-			indent = strIndent.toString();
-			childIndent = indent.concat(config.getPrettyIndentSymbol());
 		}
+	}
 
-		w.append(indent).append("<").append(object.name);
+	/**
+	 * Writes start of element with its attributes.
+	 *
+	 * @param writer
+	 *          the writer
+	 * @param object
+	 *          the object
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private static void start(XmlWriter writer, XmlElement object) throws IOException
+	{
+		writer.startElement(object.name);
 		for (XmlAttribute attr : object.lstAttributes)
 		{
-			w.append(" ").append(attr.getName()).append(attr.getValue() != null ? "=\"" : "").append(attr.getValue() != null ? CommonUtils.normalizeText(attr.getValue()) : "")
-					.append(attr.getValue() != null ? "\"" : "");
-		}
-		if (object.lstChildren.isEmpty() && (object.value == null || object.value.trim().isEmpty()))
-		{
-			w.append("/>");
-		}
-		else if (object.lstChildren.isEmpty() && object.value != null && !object.value.trim().isEmpty())
-		{
-			w.append(">").append(CommonUtils.isCDATA(object.value) ? object.value : CommonUtils.normalizeText(object.value)).append("</").append(object.name).append(">");
-		}
-		else
-		{
-			w.append(">");
-			for (XmlElement el : object.lstChildren)
-			{
-				serialize(w, el, indentCount + 1, config);
-			}
-			if (object.value != null && !object.value.trim().isEmpty())
-			{
-				if (config.isPrettyPrint() && indentCount == 0)
-				{
-					w.append(config.getPrettyLineSymbol());
-				}
-				w.append(childIndent).append(CommonUtils.isCDATA(object.value) ? object.value : CommonUtils.normalizeText(object.value));
-			}
-			if (config.isPrettyPrint() && indentCount == 0)
-			{
-				w.append(config.getPrettyLineSymbol());
-			}
-			w.append(indent).append("</").append(object.name).append(">");
+			writer.attribute(attr.getName(), attr.getValue());
 		}
 	}
 }
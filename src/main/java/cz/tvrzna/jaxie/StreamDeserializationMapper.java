@@ -0,0 +1,421 @@
+package cz.tvrzna.jaxie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapper, that binds events of <code>XmlTokenizer</code> directly into
+ * objects, without building any tree of <code>XmlElement</code>. It follows
+ * the same rules as <code>DeserializationMapper</code>. Names read by tokenizer
+ * are interned symbols, so they are compared with names of fields by identity.
+ *
+ * @author michalt
+ */
+public class StreamDeserializationMapper
+{
+	private static final String ENTRY = "entry";
+	private static final String KEY = "key";
+	private static final String VALUE = "value";
+
+	/**
+	 * Instantiates a new stream deserialization mapper.
+	 */
+	private StreamDeserializationMapper()
+	{
+	}
+
+	/**
+	 * Deserialize root element of document.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param clazz
+	 *          the clazz
+	 * @param config
+	 *          the config
+	 * @return the t
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected static <T> T deserialize(XmlTokenizer tokenizer, Class<T> clazz, Config config) throws Exception
+	{
+		XmlEvent event;
+		while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
+		{
+			if (event == XmlEvent.START_ELEMENT)
+			{
+				return deserializeElement(tokenizer, clazz, null, config);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Deserialize current element, whose start was just read by tokenizer.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param clazz
+	 *          the clazz
+	 * @param field
+	 *          the field binding
+	 * @param config
+	 *          the config
+	 * @return the t
+	 * @throws Exception
+	 *           the exception
+	 */
+	@SuppressWarnings("unchecked")
+	protected static <T> T deserializeElement(XmlTokenizer tokenizer, Class<T> clazz, FieldBinding field, Config config) throws Exception
+	{
+		Adapter<?> adapterHandler = DeserializationMapper.getAdapter(field, clazz, config);
+		if (adapterHandler != null)
+		{
+			return (T) adapterHandler.deserialize(CommonUtils.getTextContent(tokenizer.readText()));
+		}
+
+		if ((CommonUtils.SIMPLE_CLASSES.contains(clazz) || DateCodec.isDate(clazz) || Enum.class.isAssignableFrom(clazz)) && !clazz.isArray())
+		{
+			return (T) DeserializationMapper.deserializeValue(CommonUtils.getTextContent(tokenizer.readText()), clazz, config);
+		}
+		else if (Collection.class.isAssignableFrom(clazz) || clazz.isArray())
+		{
+			List<Object> list = new ArrayList<>();
+			list.add(deserializeElement(tokenizer, getItemClass(clazz, field), null, config));
+			return (T) DeserializationMapper.toCollection(list, clazz);
+		}
+		else if (Map.class.isAssignableFrom(clazz))
+		{
+			Class<?> keyClazz = null;
+			Class<?> valueClazz = null;
+			if (field != null)
+			{
+				keyClazz = field.getKeyType();
+				valueClazz = field.getValueType();
+			}
+			if (keyClazz == null || valueClazz == null)
+			{
+				keyClazz = Object.class;
+				valueClazz = Object.class;
+			}
+			return (T) deserializeMap(tokenizer, keyClazz, valueClazz, config);
+		}
+		return deserializeObject(tokenizer, clazz, config);
+	}
+
+	/**
+	 * Deserialize object.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param clazz
+	 *          the clazz
+	 * @param config
+	 *          the config
+	 * @return the t
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static <T> T deserializeObject(XmlTokenizer tokenizer, Class<T> clazz, Config config) throws Exception
+	{
+		BindingPlan plan = BindingPlan.of(clazz);
+		T result = plan.newInstance();
+		Object[] items = new Object[plan.getFields().size()];
+
+		int level = tokenizer.getDepth();
+		XmlEvent event;
+		while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
+		{
+			if (event == XmlEvent.END_ELEMENT && tokenizer.getDepth() < level)
+			{
+				break;
+			}
+			else if (event == XmlEvent.ATTRIBUTE)
+			{
+				FieldBinding field = plan.getAttribute(tokenizer.getName());
+				if (field != null)
+				{
+					DeserializationMapper.fillAttribute(result, tokenizer.getValue(), field, config);
+				}
+			}
+			else if (event == XmlEvent.START_ELEMENT)
+			{
+				String name = tokenizer.getName();
+				FieldBinding field = plan.getElement(name);
+				Map<String, FieldBinding> mapWrapped = plan.getWrapped(name);
+				if (field != null && mapWrapped != null)
+				{
+					deserializeShared(Deserializator.parseElement(tokenizer), result, field, mapWrapped, items, config);
+				}
+				else if (field != null)
+				{
+					deserializeField(tokenizer, result, field, items, config);
+				}
+				else if (mapWrapped != null)
+				{
+					deserializeWrapper(tokenizer, result, mapWrapped, items, config);
+				}
+				else
+				{
+					tokenizer.skipElement();
+				}
+			}
+		}
+
+		DeserializationMapper.fillCollected(result, plan, items);
+		return result;
+	}
+
+	/**
+	 * Deserialize all fields, that are wrapped in current element. Only the last
+	 * wrapper is used, so items collected from previous one are dropped.
+	 *
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param result
+	 *          the result
+	 * @param mapWrapped
+	 *          the wrapped fields by their names
+	 * @param items
+	 *          the collected items by index of field
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void deserializeWrapper(XmlTokenizer tokenizer, Object result, Map<String, FieldBinding> mapWrapped, Object[] items, Config config)
+			throws Exception
+	{
+		for (FieldBinding field : mapWrapped.values())
+		{
+			items[field.getIndex()] = null;
+		}
+
+		int level = tokenizer.getDepth();
+		XmlEvent event;
+		while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
+		{
+			if (event == XmlEvent.END_ELEMENT && tokenizer.getDepth() < level)
+			{
+				break;
+			}
+			else if (event == XmlEvent.START_ELEMENT)
+			{
+				FieldBinding field = mapWrapped.get(tokenizer.getName());
+				if (field != null)
+				{
+					deserializeField(tokenizer, result, field, items, config);
+				}
+				else
+				{
+					tokenizer.skipElement();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deserialize element, whose name is shared by field and wrapper. Such
+	 * element is read whole, so it can be bound to both of them, same as in
+	 * tree mode.
+	 *
+	 * @param el
+	 *          the el
+	 * @param result
+	 *          the result
+	 * @param field
+	 *          the field
+	 * @param mapWrapped
+	 *          the wrapped fields by their names
+	 * @param items
+	 *          the collected items by index of field
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void deserializeShared(XmlElement el, Object result, FieldBinding field, Map<String, FieldBinding> mapWrapped, Object[] items,
+			Config config) throws Exception
+	{
+		deserializeField(el, result, field, items, config);
+
+		for (FieldBinding wrapped : mapWrapped.values())
+		{
+			items[wrapped.getIndex()] = null;
+		}
+		for (XmlElement child : el.lstChildren)
+		{
+			FieldBinding wrapped = mapWrapped.get(child.name);
+			if (wrapped != null)
+			{
+				deserializeField(child, result, wrapped, items, config);
+			}
+		}
+	}
+
+	/**
+	 * Deserialize already parsed element into field.
+	 *
+	 * @param el
+	 *          the el
+	 * @param result
+	 *          the result
+	 * @param field
+	 *          the field
+	 * @param items
+	 *          the collected items by index of field
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void deserializeField(XmlElement el, Object result, FieldBinding field, Object[] items, Config config) throws Exception
+	{
+		if (field.isPrimitive())
+		{
+			DeserializationMapper.fillPrimitive(result, el.getTextContent(), field);
+		}
+		else if (field.isCollected())
+		{
+			DeserializationMapper.getItems(items, field).add(DeserializationMapper.deserialize(el, field.getItemType(), config));
+		}
+		else
+		{
+			DeserializationMapper.fillField(result, DeserializationMapper.deserialize(Collections.singletonList(el), field.getType(), field, config), field);
+		}
+	}
+
+	/**
+	 * Deserialize current element into field. Items of collections and arrays
+	 * are collected, until the whole object is read.
+	 *
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param result
+	 *          the result
+	 * @param field
+	 *          the field
+	 * @param items
+	 *          the collected items by index of field
+	 * @param config
+	 *          the config
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static void deserializeField(XmlTokenizer tokenizer, Object result, FieldBinding field, Object[] items, Config config) throws Exception
+	{
+		if (field.isPrimitive())
+		{
+			DeserializationMapper.fillPrimitive(result, CommonUtils.getTextContent(tokenizer.readText()), field);
+		}
+		else if (field.isCollected())
+		{
+			DeserializationMapper.getItems(items, field).add(deserializeElement(tokenizer, field.getItemType(), null, config));
+		}
+		else
+		{
+			DeserializationMapper.fillField(result, deserializeElement(tokenizer, field.getType(), field, config), field);
+		}
+	}
+
+	/**
+	 * Deserialize map.
+	 *
+	 * @param <K>
+	 *          the key type
+	 * @param <V>
+	 *          the value type
+	 * @param tokenizer
+	 *          the tokenizer
+	 * @param keyClazz
+	 *          the key clazz
+	 * @param valueClazz
+	 *          the value clazz
+	 * @param config
+	 *          the config
+	 * @return the map
+	 * @throws Exception
+	 *           the exception
+	 */
+	private static <K, V> Map<K, V> deserializeMap(XmlTokenizer tokenizer, Class<K> keyClazz, Class<V> valueClazz, Config config) throws Exception
+	{
+		Map<K, V> result = new HashMap<>();
+		int level = tokenizer.getDepth();
+		XmlEvent event;
+		while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
+		{
+			if (event == XmlEvent.END_ELEMENT && tokenizer.getDepth() < level)
+			{
+				break;
+			}
+			else if (event == XmlEvent.START_ELEMENT && tokenizer.getName() == ENTRY)
+			{
+				K key = null;
+				V value = null;
+				boolean hasKey = false;
+				boolean hasValue = false;
+
+				int entryLevel = tokenizer.getDepth();
+				while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
+				{
+					if (event == XmlEvent.END_ELEMENT && tokenizer.getDepth() < entryLevel)
+					{
+						break;
+					}
+					else if (event == XmlEvent.START_ELEMENT && !hasKey && tokenizer.getName() == KEY)
+					{
+						key = deserializeElement(tokenizer, keyClazz, null, config);
+						hasKey = true;
+					}
+					else if (event == XmlEvent.START_ELEMENT && !hasValue && tokenizer.getName() == VALUE)
+					{
+						value = deserializeElement(tokenizer, valueClazz, null, config);
+						hasValue = true;
+					}
+					else if (event == XmlEvent.START_ELEMENT)
+					{
+						tokenizer.skipElement();
+					}
+				}
+				result.put(key, value);
+			}
+			else if (event == XmlEvent.START_ELEMENT)
+			{
+				tokenizer.skipElement();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the class of items of collection or array.
+	 *
+	 * @param clazz
+	 *          the clazz
+	 * @param field
+	 *          the field
+	 * @return the item class
+	 */
+	private static Class<?> getItemClass(Class<?> clazz, FieldBinding field)
+	{
+		if (clazz.isArray())
+		{
+			return clazz.getComponentType();
+		}
+		else if (field != null && field.getKeyType() != null)
+		{
+			return field.getKeyType();
+		}
+		return Object.class;
+	}
+}
@@ -0,0 +1,202 @@
+package cz.tvrzna.jaxie;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Symbol table of names, that maps characters of name directly to its
+ * canonical string, so repeated names are never allocated again. All symbols
+ * are interned, so they are identical with names of fields and values of
+ * annotations, and they could be compared by identity.
+ *
+ * @author michalt
+ */
+class SymbolTable
+{
+	private static final int MAX_SIZE = 4096;
+
+	private String[] symbols = new String[64];
+	private int[] hashes = new int[64];
+	private int size = 0;
+
+	/**
+	 * Gets the symbol of name from characters.
+	 *
+	 * @param buf
+	 *          the buffer
+	 * @param start
+	 *          the start
+	 * @param len
+	 *          the length
+	 * @return the symbol
+	 */
+	String lookup(char[] buf, int start, int len)
+	{
+		int hash = 0;
+		for (int i = start; i < start + len; i++)
+		{
+			hash = 31 * hash + buf[i];
+		}
+
+		int mask = symbols.length - 1;
+		for (int i = hash & mask; symbols[i] != null; i = (i + 1) & mask)
+		{
+			if (hashes[i] == hash && matches(symbols[i], buf, start, len))
+			{
+				return symbols[i];
+			}
+		}
+		return add(new String(buf, start, len), hash);
+	}
+
+	/**
+	 * Gets the symbol of name from ASCII bytes.
+	 *
+	 * @param buf
+	 *          the buffer
+	 * @param start
+	 *          the start
+	 * @param len
+	 *          the length
+	 * @return the symbol
+	 */
+	String lookup(ByteBuffer buf, int start, int len)
+	{
+		int hash = 0;
+		for (int i = start; i < start + len; i++)
+		{
+			hash = 31 * hash + buf.get(i);
+		}
+
+		int mask = symbols.length - 1;
+		for (int i = hash & mask; symbols[i] != null; i = (i + 1) & mask)
+		{
+			if (hashes[i] == hash && matches(symbols[i], buf, start, len))
+			{
+				return symbols[i];
+			}
+		}
+
+		byte[] bytes = new byte[len];
+		for (int i = 0; i < len; i++)
+		{
+			bytes[i] = buf.get(start + i);
+		}
+		return add(new String(bytes, StandardCharsets.ISO_8859_1), hash);
+	}
+
+	/**
+	 * Adds new symbol. If table is full, symbol is only interned.
+	 *
+	 * @param name
+	 *          the name
+	 * @param hash
+	 *          the hash
+	 * @return the symbol
+	 */
+	private String add(String name, int hash)
+	{
+		String symbol = name.intern();
+		if (size >= MAX_SIZE)
+		{
+			return symbol;
+		}
+		if ((size + 1) * 4 > symbols.length * 3)
+		{
+			rehash();
+		}
+		int mask = symbols.length - 1;
+		int i = hash & mask;
+		while (symbols[i] != null)
+		{
+			i = (i + 1) & mask;
+		}
+		symbols[i] = symbol;
+		hashes[i] = hash;
+		size++;
+		return symbol;
+	}
+
+	/**
+	 * Doubles capacity of table.
+	 */
+	private void rehash()
+	{
+		String[] oldSymbols = symbols;
+		int[] oldHashes = hashes;
+		symbols = new String[oldSymbols.length * 2];
+		hashes = new int[oldHashes.length * 2];
+		int mask = symbols.length - 1;
+		for (int j = 0; j < oldSymbols.length; j++)
+		{
+			if (oldSymbols[j] != null)
+			{
+				int i = oldHashes[j] & mask;
+				while (symbols[i] != null)
+				{
+					i = (i + 1) & mask;
+				}
+				symbols[i] = oldSymbols[j];
+				hashes[i] = oldHashes[j];
+			}
+		}
+	}
+
+	/**
+	 * Checks if symbol matches characters.
+	 *
+	 * @param symbol
+	 *          the symbol
+	 * @param buf
+	 *          the buffer
+	 * @param start
+	 *          the start
+	 * @param len
+	 *          the length
+	 * @return true, if successful
+	 */
+	private static boolean matches(String symbol, char[] buf, int start, int len)
+	{
+		if (symbol.length() != len)
+		{
+			return false;
+		}
+		for (int i = 0; i < len; i++)
+		{
+			if (symbol.charAt(i) != buf[start + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if symbol matches ASCII bytes.
+	 *
+	 * @param symbol
+	 *          the symbol
+	 * @param buf
+	 *          the buffer
+	 * @param start
+	 *          the start
+	 * @param len
+	 *          the length
+	 * @return true, if successful
+	 */
+	private static boolean matches(String symbol, ByteBuffer buf, int start, int len)
+	{
+		if (symbol.length() != len)
+		{
+			return false;
+		}
+		for (int i = 0; i < len; i++)
+		{
+			if (symbol.charAt(i) != buf.get(start + i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
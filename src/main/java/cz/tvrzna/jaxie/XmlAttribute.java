@@ -8,7 +8,8 @@ package cz.tvrzna.jaxie;
 public class XmlAttribute
 {
 	private final String name;
-	private final String value;
+	private String value;
+	private LazyText lazyValue;
 
 	/**
 	 * Instantiates a new xml attribute.
@@ -25,6 +26,20 @@ public class XmlAttribute
 		this.value = value;
 	}
 
+	/**
+	 * Instantiates a new xml attribute, whose value is created on first request.
+	 *
+	 * @param name
+	 *          the name
+	 * @param lazyValue
+	 *          the lazy value
+	 */
+	protected XmlAttribute(String name, LazyText lazyValue)
+	{
+		this.name = name;
+		this.lazyValue = lazyValue;
+	}
+
 	/**
 	 * Gets the name.
 	 *
@@ -42,6 +57,11 @@ public class XmlAttribute
 	 */
 	public String getValue()
 	{
+		if (lazyValue != null)
+		{
+			value = lazyValue.toString();
+			lazyValue = null;
+		}
 		return value;
 	}
 
@@ -1,9 +1,11 @@
 package cz.tvrzna.jaxie;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  * The Class XmlElement.
@@ -15,10 +17,14 @@ public class XmlElement
 
 
 	protected final String name;
-	protected final XmlElement parent;
+	protected XmlElement parent;
 	protected final List<XmlElement> lstChildren;
 	protected final List<XmlAttribute> lstAttributes;
 	protected String value;
+	protected LazyText lazyValue;
+
+	private volatile Map<String, List<XmlElement>> mapChildren;
+	private volatile Map<String, List<XmlAttribute>> mapAttributes;
 
 	private boolean displayXmlInfo = false;
 
@@ -121,7 +127,7 @@ public class XmlElement
 		{
 			childElementFunction.accept(childElement);
 		}
-		lstChildren.add(childElement);
+		addChild(childElement);
 		return this;
 	}
 
@@ -136,11 +142,27 @@ public class XmlElement
 	{
 		if (childElement.parent.equals(this))
 		{
-			lstChildren.add(childElement);
+			addChild(childElement);
 		}
 		return this;
 	}
 
+	/**
+	 * Adds the child element into list of children and drops index of children,
+	 * if it has been built already.
+	 *
+	 * @param childElement
+	 *          the child element
+	 */
+	protected void addChild(XmlElement childElement)
+	{
+		lstChildren.add(childElement);
+		if (mapChildren != null)
+		{
+			mapChildren = null;
+		}
+	}
+
 	/**
 	 * Gets the name.
 	 *
@@ -152,7 +174,8 @@ public class XmlElement
 	}
 
 	/**
-	 * Gets the list of all elements with defined name.
+	 * Gets the list of all elements with defined name. Returned list is
+	 * unmodifiable view of index of children, so it is not copied.
 	 *
 	 * @param name
 	 *          the name
@@ -160,11 +183,8 @@ public class XmlElement
 	 */
 	public List<XmlElement> get(String name)
 	{
-		if (name != null)
-		{
-			return lstChildren.stream().filter(e -> name.equals(e.name)).collect(Collectors.toList());
-		}
-		return new ArrayList<>();
+		List<XmlElement> result = name != null ? getChildrenIndex().get(name) : null;
+		return result != null ? Collections.unmodifiableList(result) : Collections.emptyList();
 	}
 
 	/**
@@ -176,11 +196,30 @@ public class XmlElement
 	 */
 	public XmlElement getFirst(String name)
 	{
-		if (name != null)
+		List<XmlElement> result = name != null ? getChildrenIndex().get(name) : null;
+		return result != null ? result.get(0) : null;
+	}
+
+	/**
+	 * Gets the index of children by their names. Index is built on first lookup
+	 * into local map, that is never changed after it is published, so
+	 * concurrent lookups of parsed tree are safe.
+	 *
+	 * @return the children index
+	 */
+	private Map<String, List<XmlElement>> getChildrenIndex()
+	{
+		Map<String, List<XmlElement>> index = mapChildren;
+		if (index == null)
 		{
-			return lstChildren.stream().filter(e -> name.equals(e.name)).findFirst().orElse(null);
+			index = new HashMap<>();
+			for (XmlElement el : lstChildren)
+			{
+				index.computeIfAbsent(el.name, k -> new ArrayList<>(1)).add(el);
+			}
+			mapChildren = index;
 		}
-		return null;
+		return index;
 	}
 
 	/**
@@ -204,12 +243,29 @@ public class XmlElement
 	 */
 	public XmlElement addAttribute(String name, String value)
 	{
-		lstAttributes.add(new XmlAttribute(name, value));
+		addAttribute(new XmlAttribute(name, value));
 		return this;
 	}
 
 	/**
-	 * Gets the list of all attributes with defined name.
+	 * Adds the attribute into list of attributes and drops index of attributes,
+	 * if it has been built already.
+	 *
+	 * @param attribute
+	 *          the attribute
+	 */
+	protected void addAttribute(XmlAttribute attribute)
+	{
+		lstAttributes.add(attribute);
+		if (mapAttributes != null)
+		{
+			mapAttributes = null;
+		}
+	}
+
+	/**
+	 * Gets the list of all attributes with defined name. Returned list is
+	 * unmodifiable view of index of attributes, so it is not copied.
 	 *
 	 * @param name
 	 *          the name
@@ -217,11 +273,29 @@ public class XmlElement
 	 */
 	public List<XmlAttribute> getAttributes(String name)
 	{
-		if (name != null)
+		List<XmlAttribute> result = name != null ? getAttributesIndex().get(name) : null;
+		return result != null ? Collections.unmodifiableList(result) : Collections.emptyList();
+	}
+
+	/**
+	 * Gets the index of attributes by their names. Index is built on first
+	 * lookup the same way as index of children.
+	 *
+	 * @return the attributes index
+	 */
+	private Map<String, List<XmlAttribute>> getAttributesIndex()
+	{
+		Map<String, List<XmlAttribute>> index = mapAttributes;
+		if (index == null)
 		{
-			return lstAttributes.stream().filter(a -> name.equals(a.getName())).collect(Collectors.toList());
+			index = new HashMap<>();
+			for (XmlAttribute attr : lstAttributes)
+			{
+				index.computeIfAbsent(attr.getName(), k -> new ArrayList<>(1)).add(attr);
+			}
+			mapAttributes = index;
 		}
-		return new ArrayList<>();
+		return index;
 	}
 
 	/**
@@ -231,11 +305,22 @@ public class XmlElement
 	 */
 	public String getTextContent()
 	{
-		if (value != null && value.startsWith("<![CDATA[") && value.endsWith("]]>"))
+		return CommonUtils.getTextContent(getValue());
+	}
+
+	/**
+	 * Gets the value, as it is written in document including CDATA. Lazy value
+	 * is created on first call.
+	 *
+	 * @return the value
+	 */
+	protected String getValue()
+	{
+		if (lazyValue != null)
 		{
-			return value.substring("<![CDATA[".length(), value.lastIndexOf("]]>"));
+			value = lazyValue.toString();
+			lazyValue = null;
 		}
-
 		return value;
 	}
 
@@ -274,6 +359,7 @@ public class XmlElement
 	 */
 	private XmlElement setTextContent(String value, boolean cdata)
 	{
+		lazyValue = null;
 		if (value != null)
 		{
 			if (cdata)
@@ -0,0 +1,81 @@
+package cz.tvrzna.jaxie;
+
+/**
+ * Output, that builds tree of <code>XmlElement</code>.
+ *
+ * @author michalt
+ */
+public class XmlElementOutput extends XmlOutput implements ForkableOutput
+{
+	private XmlElement root;
+	private XmlElement current;
+
+	@Override
+	protected void startElement(String name)
+	{
+		XmlElement el = new XmlElement(name, current);
+		if (current != null)
+		{
+			current.add(el);
+		}
+		else
+		{
+			root = el;
+		}
+		current = el;
+	}
+
+	@Override
+	protected void attribute(String name, String value)
+	{
+		current.addAttribute(name, value);
+	}
+
+	@Override
+	protected void text(String value)
+	{
+		current.setTextContent(value);
+	}
+
+	@Override
+	protected void endElement()
+	{
+		current = current.parent;
+	}
+
+	/**
+	 * Creates output of chunk, whose elements are added to detached copy of
+	 * current element.
+	 */
+	@Override
+	public XmlOutput fork()
+	{
+		if (current == null)
+		{
+			return null;
+		}
+		XmlElementOutput out = new XmlElementOutput();
+		out.current = new XmlElement(current.name, null);
+		return out;
+	}
+
+	@Override
+	public void join(XmlOutput chunk)
+	{
+		for (XmlElement child : ((XmlElementOutput) chunk).current.lstChildren)
+		{
+			child.parent = current;
+			current.addChild(child);
+		}
+	}
+
+	/**
+	 * Gets the root element.
+	 *
+	 * @return the root
+	 */
+	protected XmlElement getRoot()
+	{
+		return root;
+	}
+}
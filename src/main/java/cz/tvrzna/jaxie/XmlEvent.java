@@ -0,0 +1,20 @@
+package cz.tvrzna.jaxie;
+
+/**
+ * Type of event read by <code>XmlTokenizer</code>.
+ *
+ * @author michalt
+ */
+public enum XmlEvent
+{
+	/** Start of element, its name is available. */
+	START_ELEMENT,
+	/** Attribute of the last started element, its name and value are available. */
+	ATTRIBUTE,
+	/** Text content of current element, its value is available. */
+	TEXT,
+	/** End of element, its name is available. */
+	END_ELEMENT,
+	/** End of document, no more events follow. */
+	END_DOCUMENT;
+}
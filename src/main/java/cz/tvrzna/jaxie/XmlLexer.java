@@ -0,0 +1,204 @@
+package cz.tvrzna.jaxie;
+
+import java.io.IOException;
+
+/**
+ * Lexer, that scans input of <code>XmlTokenizer</code>. It provides lookahead
+ * and bulk scanning of names, texts and attribute values, while grammar of XML
+ * is handled by tokenizer. In lazy mode, values are not created, only their
+ * range in retained buffer is recorded.
+ *
+ * @author michalt
+ */
+abstract class XmlLexer
+{
+	protected static final char[] COMMENT_START = "<!--".toCharArray();
+	protected static final char[] COMMENT_END = "-->".toCharArray();
+	protected static final char[] CDATA_START = "<![CDATA[".toCharArray();
+	protected static final char[] CDATA_END = "]]>".toCharArray();
+
+	protected final SymbolTable symbols = new SymbolTable();
+	protected boolean lazy = false;
+	protected int rangeStart;
+	protected int rangeEnd;
+	protected boolean rangeAscii;
+
+	/**
+	 * Gets the character at current position.
+	 *
+	 * @return the character, or <code>-1</code> at the end of input
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract int peek() throws IOException;
+
+	/**
+	 * Gets the character at <code>offset</code> from current position.
+	 *
+	 * @param offset
+	 *          the offset
+	 * @return the character, or <code>-1</code> at the end of input
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract int peek(int offset) throws IOException;
+
+	/**
+	 * Moves current position by <code>n</code> characters, that were already
+	 * peeked.
+	 *
+	 * @param n
+	 *          the n
+	 */
+	abstract void skip(int n);
+
+	/**
+	 * Checks if input at current position starts with sequence.
+	 *
+	 * @param seq
+	 *          the seq
+	 * @return true, if successful
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract boolean startsWith(char[] seq) throws IOException;
+
+	/**
+	 * Skips whitespace.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract void skipWhitespace() throws IOException;
+
+	/**
+	 * Reads name of element or attribute, that ends with whitespace,
+	 * <code>&gt;</code>, <code>/</code> or <code>=</code>. Name is canonical
+	 * interned symbol.
+	 *
+	 * @return the name
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract String readName() throws IOException;
+
+	/**
+	 * Reads text until next tag. CDATA sections are kept in text, while comments
+	 * are removed.
+	 *
+	 * @return the text
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract String readText() throws IOException;
+
+	/**
+	 * Skips text until next tag, without creating any string.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract void skipText() throws IOException;
+
+	/**
+	 * Reads value until closing quote, that is skipped.
+	 *
+	 * @param quote
+	 *          the quote
+	 * @return the value
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract String readQuoted(char quote) throws IOException;
+
+	/**
+	 * Reads unquoted value, that ends with whitespace, <code>&gt;</code> or
+	 * <code>/</code>.
+	 *
+	 * @return the value
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract String readUnquoted() throws IOException;
+
+	/**
+	 * Skips all characters until the end of defined sequence.
+	 *
+	 * @param end
+	 *          the end
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract void skipPast(char[] end) throws IOException;
+
+	/**
+	 * Skips declaration like <code>DOCTYPE</code>, including its internal
+	 * subset.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	abstract void skipDeclaration() throws IOException;
+
+	/**
+	 * Checks if whole input is retained in buffer, that never changes, so
+	 * values could be created from it later.
+	 *
+	 * @return true, if is retained
+	 */
+	abstract boolean isRetained();
+
+	/**
+	 * Creates string from buffer between indexes.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @param ascii
+	 *          true, if range contains only ASCII characters
+	 * @return the string
+	 */
+	abstract String string(int start, int end, boolean ascii);
+
+	/**
+	 * Records range of value, that is created later by <code>LazyText</code>.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @param ascii
+	 *          true, if range contains only ASCII characters
+	 */
+	protected void defer(int start, int end, boolean ascii)
+	{
+		rangeStart = start;
+		rangeEnd = end;
+		rangeAscii = ascii;
+	}
+
+	/**
+	 * Checks if character is whitespace.
+	 *
+	 * @param c
+	 *          the c
+	 * @return true, if is whitespace
+	 */
+	protected static boolean isWhitespace(int c)
+	{
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	/**
+	 * Checks if character ends name.
+	 *
+	 * @param c
+	 *          the c
+	 * @return true, if is name end
+	 */
+	protected static boolean isNameEnd(int c)
+	{
+		return isWhitespace(c) || c == '>' || c == '/' || c == '=';
+	}
+}
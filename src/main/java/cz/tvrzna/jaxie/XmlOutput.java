@@ -0,0 +1,156 @@
+package cz.tvrzna.jaxie;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Target of serialization, that receives elements, attributes and text content
+ * in document order. Attributes of element must be written before its first
+ * child element.
+ *
+ * @author michalt
+ */
+public abstract class XmlOutput
+{
+	private static final int MIN_CHUNK_SIZE = 64;
+	private static final int MAX_CHUNK_SIZE = 8192;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * Starts new child element of current element.
+	 *
+	 * @param name
+	 *          the name
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	protected abstract void startElement(String name) throws IOException;
+
+	/**
+	 * Adds attribute to current element.
+	 *
+	 * @param name
+	 *          the name
+	 * @param value
+	 *          the value
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	protected abstract void attribute(String name, String value) throws IOException;
+
+	/**
+	 * Sets text content of current element.
+	 *
+	 * @param value
+	 *          the value
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	protected abstract void text(String value) throws IOException;
+
+	/**
+	 * Ends current element.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	protected abstract void endElement() throws IOException;
+
+	/**
+	 * Writes items as children of current element in parallel chunks on common
+	 * <code>ForkJoinPool</code>, if output is <code>ForkableOutput</code>. Chunks are appended in original order, so
+	 * output is the same as if items were written sequentially. Only limited
+	 * number of chunks is buffered at once.
+	 *
+	 * @param <E>
+	 *          the element type
+	 * @param items
+	 *          the items
+	 * @param writer
+	 *          the writer of item
+	 * @throws Exception
+	 *           the exception
+	 */
+	protected <E> void writeParallel(List<E> items, ItemWriter<E> writer) throws Exception
+	{
+		ForkableOutput forkable = this instanceof ForkableOutput ? (ForkableOutput) this : null;
+		if (forkable == null || forkable.fork() == null)
+		{
+			for (E item : items)
+			{
+				writer.write(this, item);
+			}
+			return;
+		}
+
+		int chunks = ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD;
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(items.size() / chunks, MAX_CHUNK_SIZE));
+		for (int start = 0; start < items.size(); start += chunkSize * chunks)
+		{
+			List<Callable<XmlOutput>> lstTasks = new ArrayList<>();
+			for (int from = start; from < Math.min(start + chunkSize * chunks, items.size()); from += chunkSize)
+			{
+				List<E> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+				XmlOutput out = forkable.fork();
+				lstTasks.add(() -> {
+					for (E item : chunk)
+					{
+						writer.write(out, item);
+					}
+					return out;
+				});
+			}
+
+			try
+			{
+				for (Future<XmlOutput> future : ForkJoinPool.commonPool().invokeAll(lstTasks))
+				{
+					forkable.join(future.get());
+				}
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof Exception)
+				{
+					throw (Exception) e.getCause();
+				}
+				throw e;
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+	}
+
+	/**
+	 * Writer of one item into output.
+	 *
+	 * @author michalt
+	 *
+	 * @param <E>
+	 *          the element type
+	 */
+	protected interface ItemWriter<E>
+	{
+
+		/**
+		 * Writes item into output.
+		 *
+		 * @param out
+		 *          the out
+		 * @param item
+		 *          the item
+		 * @throws Exception
+		 *           the exception
+		 */
+		void write(XmlOutput out, E item) throws Exception;
+	}
+}
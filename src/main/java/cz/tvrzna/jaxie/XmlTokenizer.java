@@ -0,0 +1,540 @@
+package cz.tvrzna.jaxie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Pull tokenizer of XML, that reads document as sequence of
+ * <code>XmlEvent</code>. Each call of <code>next()</code> reads one event,
+ * whose name and value are available until the next call. Attributes of
+ * element are reported as separate events right after its start. Comments,
+ * processing instructions and document type declarations are skipped. Text is
+ * reported as it is written in document, including CDATA sections.
+ *
+ * <pre>
+ * XmlTokenizer tokenizer = new XmlTokenizer(xml);
+ * XmlEvent event;
+ * while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
+ * {
+ * 	if (event == XmlEvent.START_ELEMENT)
+ * 	{
+ * 		System.out.println(tokenizer.getName());
+ * 	}
+ * }
+ * </pre>
+ *
+ * @author michalt
+ */
+public class XmlTokenizer
+{
+	private static final char[] PI_END = "?>".toCharArray();
+
+	private final XmlLexer lexer;
+
+	private XmlEvent event;
+	private String name;
+	private String value;
+	private LazyText lazyValue;
+	private boolean inTag = false;
+	private boolean skipping = false;
+
+	private String[] stack = new String[16];
+	private int depth = 0;
+	private int maxDepth = Config.DEFAULT_MAX_DEPTH;
+	private int fragmentDepth = 0;
+
+	/**
+	 * Instantiates a new xml tokenizer over whole content.
+	 *
+	 * @param content
+	 *          the content
+	 */
+	public XmlTokenizer(String content)
+	{
+		this(new CharXmlLexer(content));
+	}
+
+	/**
+	 * Instantiates a new xml tokenizer, that reads reader through its own
+	 * buffer.
+	 *
+	 * @param reader
+	 *          the reader
+	 */
+	public XmlTokenizer(Reader reader)
+	{
+		this(new CharXmlLexer(reader));
+	}
+
+	/**
+	 * Instantiates a new xml tokenizer, that reads input stream in encoding
+	 * detected from header of document.
+	 *
+	 * @param is
+	 *          the input stream
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public XmlTokenizer(InputStream is) throws IOException
+	{
+		this(new CharXmlLexer(ByteXmlLexer.newReader(is)));
+	}
+
+	/**
+	 * Instantiates a new xml tokenizer over encoded bytes of document, whose
+	 * encoding is detected from its header.
+	 *
+	 * @param content
+	 *          the content
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public XmlTokenizer(byte[] content) throws IOException
+	{
+		this(ByteBuffer.wrap(content));
+	}
+
+	/**
+	 * Instantiates a new xml tokenizer over remaining encoded bytes of buffer,
+	 * whose encoding is detected from header of document. Buffer is read
+	 * directly, without any copy.
+	 *
+	 * @param buffer
+	 *          the buffer
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public XmlTokenizer(ByteBuffer buffer) throws IOException
+	{
+		this(ByteXmlLexer.of(buffer));
+	}
+
+	/**
+	 * Instantiates a new xml tokenizer over file, that is read directly from
+	 * memory-mapped windows. Encoding is detected from header of document.
+	 * Channel is not closed.
+	 *
+	 * @param channel
+	 *          the channel
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public XmlTokenizer(FileChannel channel) throws IOException
+	{
+		this(ByteXmlLexer.of(channel, ByteXmlLexer.MAX_WINDOW_SIZE));
+	}
+
+	/**
+	 * Instantiates a new xml tokenizer.
+	 *
+	 * @param lexer
+	 *          the lexer
+	 */
+	XmlTokenizer(XmlLexer lexer)
+	{
+		this.lexer = lexer;
+	}
+
+	/**
+	 * Reads next event.
+	 *
+	 * @return the xml event
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public XmlEvent next() throws IOException
+	{
+		name = null;
+		value = null;
+		lazyValue = null;
+		if (inTag)
+		{
+			lexer.skipWhitespace();
+			int c = lexer.peek();
+			if (c < 0)
+			{
+				throw new IOException("Unexpected end of document in element <" + stack[depth - 1] + ">.");
+			}
+			else if (c == '>')
+			{
+				lexer.skip(1);
+				inTag = false;
+			}
+			else if (c == '/')
+			{
+				lexer.skip(1);
+				lexer.skipWhitespace();
+				expect('>');
+				inTag = false;
+				name = pop();
+				return event = XmlEvent.END_ELEMENT;
+			}
+			else
+			{
+				readAttribute();
+				return event = XmlEvent.ATTRIBUTE;
+			}
+		}
+		return event = readContent();
+	}
+
+	/**
+	 * Gets the current event.
+	 *
+	 * @return the event
+	 */
+	public XmlEvent getEvent()
+	{
+		return event;
+	}
+
+	/**
+	 * Gets the name of current element or attribute. Name is interned, so it
+	 * could be compared by identity.
+	 *
+	 * @return the name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Gets the value of current attribute or text.
+	 *
+	 * @return the value
+	 */
+	public String getValue()
+	{
+		if (value == null && lazyValue != null)
+		{
+			value = lazyValue.toString();
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the lazy value of current attribute or text.
+	 *
+	 * @return the lazy value, or <code>null</code> if value was created
+	 */
+	LazyText getLazyValue()
+	{
+		return lazyValue;
+	}
+
+	/**
+	 * Sets the maximal depth of nested elements. Deeper document is rejected
+	 * with <code>IOException</code>.
+	 *
+	 * @param maxDepth
+	 *          the new max depth
+	 */
+	public void setMaxDepth(int maxDepth)
+	{
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Gets the maximal depth of nested elements.
+	 *
+	 * @return the max depth
+	 */
+	public int getMaxDepth()
+	{
+		return maxDepth;
+	}
+
+	/**
+	 * Starts reading of fragment of content of element, that was opened
+	 * elsewhere. Document may end inside of this element, but it could not be
+	 * closed.
+	 *
+	 * @param parentName
+	 *          the parent name
+	 * @throws IOException
+	 *           Signals that maximal depth was exceeded.
+	 */
+	void openFragment(String parentName) throws IOException
+	{
+		push(parentName);
+		fragmentDepth = depth;
+	}
+
+	/**
+	 * Sets values of attributes and texts to be created lazily, when they are
+	 * requested. It has effect only if whole document is kept in memory, e.g.
+	 * when it is parsed from <code>String</code>, <code>byte[]</code> or
+	 * <code>ByteBuffer</code>.
+	 *
+	 * @param lazy
+	 *          the lazy
+	 */
+	public void setLazy(boolean lazy)
+	{
+		lexer.lazy = lazy && lexer.isRetained();
+	}
+
+	/**
+	 * Checks if values are created lazily.
+	 *
+	 * @return true, if is lazy
+	 */
+	public boolean isLazy()
+	{
+		return lexer.lazy;
+	}
+
+	/**
+	 * Gets the depth of current element, where root element has depth
+	 * <code>1</code>.
+	 *
+	 * @return the depth
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * Reads text content of current element until its end. Nested elements are
+	 * skipped.
+	 *
+	 * @return the text content, or <code>null</code> if element has no text
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public String readText() throws IOException
+	{
+		String result = null;
+		StringBuilder sb = null;
+		int level = depth;
+		XmlEvent e;
+		while ((e = next()) != XmlEvent.END_DOCUMENT)
+		{
+			if (e == XmlEvent.END_ELEMENT && depth < level)
+			{
+				break;
+			}
+			else if (e == XmlEvent.TEXT && depth == level)
+			{
+				if (result == null)
+				{
+					result = getValue();
+				}
+				else
+				{
+					sb = sb == null ? new StringBuilder(result) : sb;
+					sb.append(getValue());
+				}
+			}
+		}
+		return sb != null ? sb.toString() : result;
+	}
+
+	/**
+	 * Skips current element with all its content. Skipped text is never
+	 * decoded.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public void skipElement() throws IOException
+	{
+		int level = depth;
+		skipping = true;
+		try
+		{
+			XmlEvent e;
+			while ((e = next()) != XmlEvent.END_DOCUMENT)
+			{
+				if (e == XmlEvent.END_ELEMENT && depth < level)
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			skipping = false;
+		}
+	}
+
+	/**
+	 * Reads content between tags.
+	 *
+	 * @return the xml event
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private XmlEvent readContent() throws IOException
+	{
+		while (true)
+		{
+			int c = lexer.peek();
+			if (c < 0)
+			{
+				if (depth > fragmentDepth)
+				{
+					throw new IOException("Unexpected end of document in element <" + stack[depth - 1] + ">.");
+				}
+				return XmlEvent.END_DOCUMENT;
+			}
+			if (c != '<' || lexer.startsWith(XmlLexer.CDATA_START))
+			{
+				if (skipping || depth == 0)
+				{
+					lexer.skipText();
+					continue;
+				}
+				setValue(lexer.readText());
+				return XmlEvent.TEXT;
+			}
+
+			c = lexer.peek(1);
+			if (c == '!' && lexer.startsWith(XmlLexer.COMMENT_START))
+			{
+				lexer.skipPast(XmlLexer.COMMENT_END);
+			}
+			else if (c == '?')
+			{
+				lexer.skipPast(PI_END);
+			}
+			else if (c == '!')
+			{
+				lexer.skipDeclaration();
+			}
+			else if (c == '/')
+			{
+				lexer.skip(2);
+				String endName = lexer.readName();
+				lexer.skipWhitespace();
+				expect('>');
+				name = pop();
+				if (!name.equals(endName))
+				{
+					throw new IOException("Unexpected end element </" + endName + ">, expected </" + name + ">.");
+				}
+				return XmlEvent.END_ELEMENT;
+			}
+			else
+			{
+				lexer.skip(1);
+				name = lexer.readName();
+				push(name);
+				inTag = true;
+				return XmlEvent.START_ELEMENT;
+			}
+		}
+	}
+
+	/**
+	 * Reads attribute of current element.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void readAttribute() throws IOException
+	{
+		name = lexer.readName();
+		if (name.isEmpty())
+		{
+			throw new IOException("Unexpected character '" + (char) lexer.peek() + "' in element <" + stack[depth - 1] + ">.");
+		}
+		lexer.skipWhitespace();
+		if (lexer.peek() == '=')
+		{
+			lexer.skip(1);
+			lexer.skipWhitespace();
+			int quote = lexer.peek();
+			if (quote < 0)
+			{
+				throw new IOException("Unexpected end of document in attribute " + name + ".");
+			}
+			else if (quote == '"' || quote == '\'')
+			{
+				lexer.skip(1);
+				setValue(lexer.readQuoted((char) quote));
+			}
+			else
+			{
+				setValue(lexer.readUnquoted());
+			}
+		}
+	}
+
+	/**
+	 * Sets the value read by lexer, that is <code>null</code> in lazy mode.
+	 *
+	 * @param value
+	 *          the value
+	 */
+	private void setValue(String value)
+	{
+		this.value = value;
+		if (value == null)
+		{
+			lazyValue = new LazyText(lexer);
+		}
+	}
+
+	/**
+	 * Expects character at current position.
+	 *
+	 * @param c
+	 *          the c
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void expect(char c) throws IOException
+	{
+		if (lexer.peek() != c)
+		{
+			throw new IOException("Expected '" + c + "'.");
+		}
+		lexer.skip(1);
+	}
+
+	/**
+	 * Pushes element name on stack of open elements.
+	 *
+	 * @param elementName
+	 *          the element name
+	 * @throws IOException
+	 *           Signals that maximal depth was exceeded.
+	 */
+	private void push(String elementName) throws IOException
+	{
+		if (depth >= maxDepth)
+		{
+			throw new IOException("Maximal depth " + maxDepth + " of elements exceeded.");
+		}
+		if (depth == stack.length)
+		{
+			stack = Arrays.copyOf(stack, depth * 2);
+		}
+		stack[depth++] = elementName;
+	}
+
+	/**
+	 * Pops element name from stack of open elements.
+	 *
+	 * @return the string
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private String pop() throws IOException
+	{
+		if (depth <= fragmentDepth)
+		{
+			throw new IOException("Unexpected end element.");
+		}
+		String result = stack[--depth];
+		stack[depth] = null;
+		return result;
+	}
+}
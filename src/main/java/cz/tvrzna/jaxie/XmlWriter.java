@@ -0,0 +1,522 @@
+package cz.tvrzna.jaxie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Output, that writes elements directly into <code>Writer</code>, without
+ * building any tree of <code>XmlElement</code>. Produced XML is the same as
+ * from <code>Serializator</code>. It could be used to generate document by
+ * hand, element by element, while only names and text contents of open
+ * elements are kept in memory. Writer is created by
+ * <code>Jaxie.createWriter</code>. Document written into
+ * <code>OutputStream</code> in other charset than UTF-8 starts with XML header,
+ * that declares it. Names and CDATA sections are checked, that they could be
+ * encoded in such charset, because character references are not allowed in
+ * them.
+ *
+ * @author michalt
+ */
+public class XmlWriter extends XmlOutput implements Closeable, ForkableOutput
+{
+	private final Writer w;
+	private final Config config;
+	private final int baseDepth;
+	private final Charset limitedCharset;
+	private final boolean declareCharset;
+	private final List<String> lstIndents = new ArrayList<>();
+	private CharsetEncoder encoder;
+	private boolean xmlInfo = false;
+
+	private String[] names = new String[16];
+	private String[] texts = new String[16];
+	private boolean[] raw = new boolean[16];
+	private boolean[] children = new boolean[16];
+	private int size = 0;
+
+	/**
+	 * Instantiates a new xml writer.
+	 *
+	 * @param w
+	 *          the w
+	 * @param config
+	 *          the config
+	 */
+	protected XmlWriter(Writer w, Config config)
+	{
+		this(w, 0, config);
+	}
+
+	/**
+	 * Instantiates a new xml writer, whose first element is written with
+	 * indentation of <code>baseDepth</code>.
+	 *
+	 * @param w
+	 *          the w
+	 * @param baseDepth
+	 *          the base depth
+	 * @param config
+	 *          the config
+	 */
+	protected XmlWriter(Writer w, int baseDepth, Config config)
+	{
+		this(w, baseDepth, w instanceof ByteWriter ? ((ByteWriter) w).getLimitedCharset() : null, config);
+	}
+
+	/**
+	 * Instantiates a new xml writer, that checks names and CDATA sections
+	 * against limited charset.
+	 *
+	 * @param w
+	 *          the w
+	 * @param baseDepth
+	 *          the base depth
+	 * @param limitedCharset
+	 *          the charset, that could not encode all characters, or
+	 *          <code>null</code>
+	 * @param config
+	 *          the config
+	 */
+	private XmlWriter(Writer w, int baseDepth, Charset limitedCharset, Config config)
+	{
+		this.w = w;
+		this.baseDepth = baseDepth;
+		this.limitedCharset = limitedCharset;
+		this.config = config;
+		declareCharset = w instanceof ByteWriter && baseDepth == 0 && !StandardCharsets.UTF_8.equals(config.getCharset());
+	}
+
+	/**
+	 * Writes XML header with encoding of charset from config. It must be
+	 * written before root element. Header is written only once.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public void writeXmlInfo() throws IOException
+	{
+		if (xmlInfo)
+		{
+			return;
+		}
+		xmlInfo = true;
+		w.write("<?xml version=\"1.0\" encoding=\"");
+		w.write(config.getCharset().name().toLowerCase());
+		w.write("\"?>");
+		if (config.isPrettyPrint())
+		{
+			w.write(config.getPrettyLineSymbol());
+		}
+	}
+
+	@Override
+	public void startElement(String name) throws IOException
+	{
+		checkName(name);
+		if (size == 0 && declareCharset)
+		{
+			writeXmlInfo();
+		}
+		if (size > 0 && !children[size - 1])
+		{
+			w.write('>');
+			children[size - 1] = true;
+		}
+		if (size == names.length)
+		{
+			names = Arrays.copyOf(names, size * 2);
+			texts = Arrays.copyOf(texts, size * 2);
+			raw = Arrays.copyOf(raw, size * 2);
+			children = Arrays.copyOf(children, size * 2);
+		}
+		w.write(getIndent(baseDepth + size));
+		w.write('<');
+		w.write(name);
+
+		names[size] = name;
+		texts[size] = null;
+		children[size] = false;
+		size++;
+	}
+
+	@Override
+	public void attribute(String name, String value) throws IOException
+	{
+		if (size == 0 || children[size - 1])
+		{
+			throw new IllegalStateException("Attribute must be written before any child element.");
+		}
+		checkName(name);
+		w.write(' ');
+		w.write(name);
+		if (value != null)
+		{
+			w.write("=\"");
+			CommonUtils.writeEscaped(w, value);
+			w.write('"');
+		}
+	}
+
+	/**
+	 * Appends text content to current element. Text is escaped, unless it is
+	 * CDATA. Text is written, when element is ended.
+	 */
+	@Override
+	public void text(String value)
+	{
+		if (value != null)
+		{
+			appendText(value, !CommonUtils.isCDATA(value));
+		}
+	}
+
+	/**
+	 * Appends CDATA section to text content of current element. Text is written,
+	 * when element is ended.
+	 *
+	 * @param value
+	 *          the value
+	 */
+	public void cdata(String value)
+	{
+		appendText("<![CDATA[" + value.replace("]]>", "]]]]><![CDATA[>") + "]]>", false);
+	}
+
+	/**
+	 * Appends text to text content of current element. Single text is kept as
+	 * it is and escaped only when it is written, appended texts are joined
+	 * already escaped.
+	 *
+	 * @param text
+	 *          the text
+	 * @param escape
+	 *          the escape
+	 */
+	private void appendText(String text, boolean escape)
+	{
+		if (size == 0)
+		{
+			throw new IllegalStateException("Text must be written inside of element.");
+		}
+		int i = size - 1;
+		if (texts[i] == null)
+		{
+			texts[i] = text;
+			raw[i] = escape;
+			return;
+		}
+		String current = raw[i] ? CommonUtils.normalizeText(texts[i]) : texts[i];
+		texts[i] = current.concat(escape ? CommonUtils.normalizeText(text) : text);
+		raw[i] = false;
+	}
+
+	@Override
+	public void endElement() throws IOException
+	{
+		if (size == 0)
+		{
+			throw new IllegalStateException("There is no element to be ended.");
+		}
+		size--;
+		String name = names[size];
+		String text = texts[size];
+		names[size] = null;
+		texts[size] = null;
+
+		int depth = baseDepth + size;
+		boolean hasText = text != null && !isBlank(text);
+		if (!children[size])
+		{
+			if (!hasText)
+			{
+				w.write("/>");
+				return;
+			}
+			w.write('>');
+			writeText(text, raw[size]);
+		}
+		else
+		{
+			if (hasText)
+			{
+				if (config.isPrettyPrint() && depth == 0)
+				{
+					w.write(config.getPrettyLineSymbol());
+				}
+				w.write(getIndent(depth));
+				if (config.isPrettyPrint())
+				{
+					w.write(config.getPrettyIndentSymbol());
+				}
+				writeText(text, raw[size]);
+			}
+			if (config.isPrettyPrint() && depth == 0)
+			{
+				w.write(config.getPrettyLineSymbol());
+			}
+			w.write(getIndent(depth));
+		}
+		w.write("</");
+		w.write(name);
+		w.write('>');
+	}
+
+	/**
+	 * Checks if text consists only of whitespaces, without creating trimmed
+	 * copy of it.
+	 *
+	 * @param text
+	 *          the text
+	 * @return true, if is blank
+	 */
+	private static boolean isBlank(String text)
+	{
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (text.charAt(i) > ' ')
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes text content of element.
+	 *
+	 * @param text
+	 *          the text
+	 * @param escape
+	 *          the escape
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void writeText(String text, boolean escape) throws IOException
+	{
+		if (escape)
+		{
+			CommonUtils.writeEscaped(w, text);
+		}
+		else
+		{
+			checkCDATA(text);
+			w.write(text);
+		}
+	}
+
+	/**
+	 * Checks, that name could be encoded in limited charset.
+	 *
+	 * @param name
+	 *          the name
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void checkName(String name) throws IOException
+	{
+		if (limitedCharset != null && !canEncode(name, 0, name.length()))
+		{
+			throw new IOException("Name " + name + " could not be encoded in " + limitedCharset.name() + ".");
+		}
+	}
+
+	/**
+	 * Checks, that CDATA sections of text could be encoded in limited charset.
+	 * Other parts of text are escaped, so their characters could be written as
+	 * character references.
+	 *
+	 * @param text
+	 *          the text
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void checkCDATA(String text) throws IOException
+	{
+		if (limitedCharset == null)
+		{
+			return;
+		}
+		int start = text.indexOf("<![CDATA[");
+		while (start >= 0)
+		{
+			int end = text.indexOf("]]>", start);
+			if (end < 0)
+			{
+				end = text.length();
+			}
+			if (!canEncode(text, start, end))
+			{
+				throw new IOException("CDATA section could not be encoded in " + limitedCharset.name() + ".");
+			}
+			start = text.indexOf("<![CDATA[", end);
+		}
+	}
+
+	/**
+	 * Checks, if part of text could be encoded in limited charset. ASCII
+	 * characters are skipped without encoder.
+	 *
+	 * @param text
+	 *          the text
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return true, if successful
+	 */
+	private boolean canEncode(String text, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+		{
+			if (text.charAt(i) >= 0x80)
+			{
+				if (encoder == null)
+				{
+					encoder = limitedCharset.newEncoder();
+				}
+				return encoder.canEncode(text.subSequence(i, end));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates writer of chunk, whose elements are indented as children of
+	 * current element.
+	 */
+	@Override
+	public XmlOutput fork()
+	{
+		return new XmlWriter(new StringWriter(), baseDepth + size, limitedCharset, config);
+	}
+
+	@Override
+	public void join(XmlOutput chunk) throws IOException
+	{
+		String content = ((XmlWriter) chunk).w.toString();
+		if (content.isEmpty())
+		{
+			return;
+		}
+		if (size > 0 && !children[size - 1])
+		{
+			w.write('>');
+			children[size - 1] = true;
+		}
+		w.write(content);
+	}
+
+	/**
+	 * Writes mapped object as child element of current element, or as root
+	 * element. Name of element is taken from <code>JaxieElement</code>
+	 * annotation of its class.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param object
+	 *          the object
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public <T> void writeObject(T object) throws IOException
+	{
+		if (object != null)
+		{
+			writeObject(object, BindingPlan.of(object.getClass()).getRootName());
+		}
+	}
+
+	/**
+	 * Writes mapped object as child element with defined name of current
+	 * element, or as root element.
+	 *
+	 * @param <T>
+	 *          the generic type
+	 * @param object
+	 *          the object
+	 * @param name
+	 *          the name
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public <T> void writeObject(T object, String name) throws IOException
+	{
+		try
+		{
+			SerializationMapper.serialize(object, name, this, size, config);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Flushes underlying writer.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public void flush() throws IOException
+	{
+		w.flush();
+	}
+
+	/**
+	 * Ends all open elements and closes underlying writer.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		while (size > 0)
+		{
+			endElement();
+		}
+		w.close();
+	}
+
+	/**
+	 * Gets the indent of element in defined depth.
+	 *
+	 * @param depth
+	 *          the depth
+	 * @return the indent
+	 */
+	private String getIndent(int depth)
+	{
+		if (!config.isPrettyPrint())
+		{
+			return "";
+		}
+		while (lstIndents.size() <= depth)
+		{
+			int i = lstIndents.size();
+			StringBuilder strIndent = new StringBuilder();
+			if (i > 0)
+			{
+				strIndent.append(config.getPrettyLineSymbol());
+			}
+			for (int j = 0; j < i; j++)
+			{
+				strIndent.append(config.getPrettyIndentSymbol());
+			}
+			lstIndents.add(strIndent.toString());
+		}
+		return lstIndents.get(depth);
+	}
+}
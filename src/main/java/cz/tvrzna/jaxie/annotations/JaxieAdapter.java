@@ -26,4 +26,13 @@ public @interface JaxieAdapter
 	 * @return the class&lt;? extends adapter&lt;?&gt;&gt;
 	 */
 	Class<? extends Adapter<?>> value();
+
+	/**
+	 * Marks adapter as stateless and thread-safe, so one instance of adapter
+	 * class is created and shared by all fields and threads. Otherwise new
+	 * instance of adapter is created for each value.
+	 *
+	 * @return true, if adapter is shared
+	 */
+	boolean shared() default false;
 }
@@ -0,0 +1,324 @@
+package cz.tvrzna.jaxie.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import cz.tvrzna.jaxie.JaxieMapper;
+import cz.tvrzna.jaxie.annotations.JaxieElement;
+
+/**
+ * Annotation processor, that generates <code>JaxieMapper</code> for each class
+ * annotated with <code>JaxieElement</code>. Generated mapper accesses fields
+ * directly, so such class is mapped without any reflective field access. Class
+ * is skipped with note, if any of its mapped fields or its default constructor
+ * is not accessible from its package.
+ *
+ * @author michalt
+ */
+@SupportedAnnotationTypes("cz.tvrzna.jaxie.annotations.JaxieElement")
+public class JaxieProcessor extends AbstractProcessor
+{
+	private static final List<TypeKind> PRIMITIVE_KINDS = Arrays.asList(TypeKind.INT, TypeKind.LONG, TypeKind.DOUBLE, TypeKind.BOOLEAN);
+
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+	{
+		for (Element element : roundEnv.getElementsAnnotatedWith(JaxieElement.class))
+		{
+			if (element.getKind() != ElementKind.CLASS)
+			{
+				continue;
+			}
+			TypeElement type = (TypeElement) element;
+			String reason = checkType(type);
+			List<VariableElement> lstFields = new ArrayList<>();
+			if (reason == null)
+			{
+				reason = collectFields(type, lstFields);
+			}
+			if (reason != null)
+			{
+				processingEnv.getMessager().printMessage(Kind.NOTE, "Jaxie mapper is not generated, ".concat(reason), type);
+				continue;
+			}
+
+			try
+			{
+				generate(type, lstFields);
+			}
+			catch (IOException e)
+			{
+				processingEnv.getMessager().printMessage(Kind.ERROR, "Jaxie mapper could not be generated: ".concat(e.getMessage()), type);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if type could be instantiated from generated mapper.
+	 *
+	 * @param type
+	 *          the type
+	 * @return the reason, why mapper could not be generated, or
+	 *         <code>null</code>
+	 */
+	private String checkType(TypeElement type)
+	{
+		if (type.getModifiers().contains(Modifier.ABSTRACT))
+		{
+			return "class is abstract.";
+		}
+		Element current = type;
+		while (current instanceof TypeElement)
+		{
+			TypeElement currentType = (TypeElement) current;
+			if (currentType.getModifiers().contains(Modifier.PRIVATE))
+			{
+				return "class is not accessible.";
+			}
+			if (currentType.getNestingKind() == NestingKind.LOCAL || currentType.getNestingKind() == NestingKind.ANONYMOUS
+					|| (currentType.getNestingKind() == NestingKind.MEMBER && !currentType.getModifiers().contains(Modifier.STATIC)))
+			{
+				return "class is not static.";
+			}
+			current = currentType.getEnclosingElement();
+		}
+
+		List<ExecutableElement> lstConstructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+		for (ExecutableElement constructor : lstConstructors)
+		{
+			if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+			{
+				return null;
+			}
+		}
+		return "class has no accessible default constructor.";
+	}
+
+	/**
+	 * Collects all mapped fields of type and its superclasses, the same way as
+	 * <code>CommonUtils.getFields</code> does.
+	 *
+	 * @param type
+	 *          the type
+	 * @param lstFields
+	 *          the list of fields
+	 * @return the reason, why mapper could not be generated, or
+	 *         <code>null</code>
+	 */
+	private String collectFields(TypeElement type, List<VariableElement> lstFields)
+	{
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		Set<String> setFieldNames = new HashSet<>();
+
+		TypeElement current = type;
+		while (current != null && !current.getQualifiedName().contentEquals(Object.class.getName()))
+		{
+			for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements()))
+			{
+				Set<Modifier> modifiers = field.getModifiers();
+				if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL) || !setFieldNames.add(field.getSimpleName().toString()))
+				{
+					continue;
+				}
+				if (modifiers.contains(Modifier.PRIVATE)
+						|| (!modifiers.contains(Modifier.PUBLIC) && !pkg.equals(processingEnv.getElementUtils().getPackageOf(current))))
+				{
+					return "field " + current.getSimpleName() + "." + field.getSimpleName() + " is not accessible.";
+				}
+				if (!isAccessible(field.asType(), pkg))
+				{
+					return "type of field " + current.getSimpleName() + "." + field.getSimpleName() + " is not accessible.";
+				}
+				lstFields.add(field);
+			}
+
+			TypeMirror superclass = current.getSuperclass();
+			current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+		}
+		return null;
+	}
+
+	/**
+	 * Checks if type could be referenced from package.
+	 *
+	 * @param type
+	 *          the type
+	 * @param pkg
+	 *          the package
+	 * @return true, if is accessible
+	 */
+	private boolean isAccessible(TypeMirror type, PackageElement pkg)
+	{
+		TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+		while (erasure.getKind() == TypeKind.ARRAY)
+		{
+			erasure = ((ArrayType) erasure).getComponentType();
+		}
+		if (erasure.getKind() != TypeKind.DECLARED)
+		{
+			return true;
+		}
+		Element current = ((DeclaredType) erasure).asElement();
+		while (current instanceof TypeElement)
+		{
+			Set<Modifier> modifiers = current.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE) || (!modifiers.contains(Modifier.PUBLIC) && !pkg.equals(processingEnv.getElementUtils().getPackageOf(current))))
+			{
+				return false;
+			}
+			current = current.getEnclosingElement();
+		}
+		return true;
+	}
+
+	/**
+	 * Generates source of mapper.
+	 *
+	 * @param type
+	 *          the type
+	 * @param lstFields
+	 *          the list of fields
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void generate(TypeElement type, List<VariableElement> lstFields) throws IOException
+	{
+		String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String mapperName = JaxieMapper.getMapperName(processingEnv.getElementUtils().getBinaryName(type).toString());
+		String mapperSimpleName = mapperName.substring(mapperName.lastIndexOf('.') + 1);
+		String typeName = type.getQualifiedName().toString();
+
+		StringBuilder sb = new StringBuilder();
+		if (!pkg.isEmpty())
+		{
+			sb.append("package ").append(pkg).append(";\n\n");
+		}
+		sb.append("/**\n * Jaxie mapper of <code>").append(typeName).append("</code> generated by <code>").append(getClass().getName()).append("</code>.\n */\n");
+		sb.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+		sb.append("public class ").append(mapperSimpleName).append(" extends ").append(JaxieMapper.class.getName()).append("<").append(typeName).append(">\n{\n");
+
+		sb.append("\tpublic ").append(mapperSimpleName).append("()\n\t{\n\t\tsuper(").append(typeName).append(".class");
+		for (int i = 0; i < lstFields.size(); i++)
+		{
+			sb.append(", \"").append(lstFields.get(i).getSimpleName()).append("\"");
+		}
+		sb.append(");\n\t}\n\n");
+
+		sb.append("\t@Override\n\tpublic ").append(typeName).append(" newInstance()\n\t{\n\t\treturn new ").append(typeName).append("();\n\t}\n\n");
+
+		sb.append("\t@Override\n\tpublic Object get(").append(typeName).append(" o, int index)\n\t{\n\t\tswitch (index)\n\t\t{\n");
+		for (int i = 0; i < lstFields.size(); i++)
+		{
+			sb.append("\t\t\tcase ").append(i).append(":\n\t\t\t\treturn o.").append(lstFields.get(i).getSimpleName()).append(";\n");
+		}
+		sb.append("\t\t\tdefault:\n\t\t\t\tthrow new IndexOutOfBoundsException(String.valueOf(index));\n\t\t}\n\t}\n\n");
+
+		sb.append("\t@Override\n\tpublic void set(").append(typeName).append(" o, int index, Object value)\n\t{\n\t\tswitch (index)\n\t\t{\n");
+		for (int i = 0; i < lstFields.size(); i++)
+		{
+			VariableElement field = lstFields.get(i);
+			sb.append("\t\t\tcase ").append(i).append(":\n\t\t\t\to.").append(field.getSimpleName()).append(" = (").append(getCastType(field.asType()))
+					.append(") value;\n\t\t\t\treturn;\n");
+		}
+		sb.append("\t\t\tdefault:\n\t\t\t\tthrow new IndexOutOfBoundsException(String.valueOf(index));\n\t\t}\n\t}\n");
+
+		for (TypeKind kind : PRIMITIVE_KINDS)
+		{
+			generatePrimitive(sb, typeName, kind, lstFields);
+		}
+		sb.append("}\n");
+
+		try (Writer w = processingEnv.getFiler().createSourceFile(mapperName, type).openWriter())
+		{
+			w.write(sb.toString());
+		}
+	}
+
+	/**
+	 * Generates getter and setter of primitive type, that access fields of this
+	 * type without boxing. Nothing is generated, if there is no such field.
+	 *
+	 * @param sb
+	 *          the sb
+	 * @param typeName
+	 *          the type name
+	 * @param kind
+	 *          the kind of primitive type
+	 * @param lstFields
+	 *          the list of fields
+	 */
+	private void generatePrimitive(StringBuilder sb, String typeName, TypeKind kind, List<VariableElement> lstFields)
+	{
+		StringBuilder getters = new StringBuilder();
+		StringBuilder setters = new StringBuilder();
+		for (int i = 0; i < lstFields.size(); i++)
+		{
+			VariableElement field = lstFields.get(i);
+			if (field.asType().getKind() == kind)
+			{
+				getters.append("\t\t\tcase ").append(i).append(":\n\t\t\t\treturn o.").append(field.getSimpleName()).append(";\n");
+				setters.append("\t\t\tcase ").append(i).append(":\n\t\t\t\to.").append(field.getSimpleName()).append(" = value;\n\t\t\t\treturn;\n");
+			}
+		}
+		if (getters.length() == 0)
+		{
+			return;
+		}
+		String primitive = kind.name().toLowerCase();
+		String name = Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+
+		sb.append("\n\t@Override\n\tpublic ").append(primitive).append(" get").append(name).append("(").append(typeName).append(" o, int index)\n\t{\n\t\tswitch (index)\n\t\t{\n");
+		sb.append(getters).append("\t\t\tdefault:\n\t\t\t\treturn super.get").append(name).append("(o, index);\n\t\t}\n\t}\n");
+
+		sb.append("\n\t@Override\n\tpublic void set").append(name).append("(").append(typeName).append(" o, int index, ").append(primitive).append(" value)\n\t{\n\t\tswitch (index)\n\t\t{\n");
+		sb.append(setters).append("\t\t\tdefault:\n\t\t\t\tsuper.set").append(name).append("(o, index, value);\n\t\t}\n\t}\n");
+	}
+
+	/**
+	 * Gets the type, that is used for cast of value in setter.
+	 *
+	 * @param type
+	 *          the type
+	 * @return the cast type
+	 */
+	private String getCastType(TypeMirror type)
+	{
+		if (type.getKind().isPrimitive())
+		{
+			return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+		}
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+}
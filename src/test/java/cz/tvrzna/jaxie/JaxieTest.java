@@ -1,11 +1,45 @@
 package cz.tvrzna.jaxie;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -55,8 +89,174 @@ public class JaxieTest
 		private byte[] arr;
 	}
 
+	public static class PrimitiveClass
+	{
+		@JaxieAttribute("no")
+		private int number;
+
+		private long total;
+
+		private double ratio;
+
+		private boolean active;
+
+		private float weight;
+	}
+
+	@JaxieElement("numbers")
+	public static class NumbersClass
+	{
+		@JaxieAttribute("no")
+		int number;
+
+		long total;
+
+		double ratio;
+
+		boolean active;
+
+		float weight;
+	}
+
+	public static class ForeignClass
+	{
+		String code;
+	}
+
+	public static class ForeignClass_JaxieMapper extends JaxieMapper<PlainClass>
+	{
+		public ForeignClass_JaxieMapper()
+		{
+			super(PlainClass.class, "code");
+		}
+
+		@Override
+		public PlainClass newInstance()
+		{
+			return new PlainClass();
+		}
+
+		@Override
+		public Object get(PlainClass o, int index)
+		{
+			return o.code;
+		}
+
+		@Override
+		public void set(PlainClass o, int index, Object value)
+		{
+			o.code = (String) value;
+		}
+	}
+
+	@JaxieElement("plain")
+	public static class PlainClass
+	{
+		@JaxieAttribute
+		String code;
+
+		Long id;
+
+		int count;
+
+		@JaxieWrapper("tags")
+		@JaxieElement("tag")
+		List<String> tags;
+
+		PlainClass child;
+	}
+
+	@JaxieElement("cursor")
+	public static class CursorClass
+	{
+		@JaxieWrapper("names")
+		@JaxieElement("name")
+		Iterator<String> names;
+
+		Stream<Integer> number;
+
+		Iterable<String> row;
+	}
+
+	@JaxieElement("times")
+	public static class TimeClass
+	{
+		@JaxieAttribute
+		Instant instant;
+
+		LocalDate localDate;
+
+		LocalDateTime localDateTime;
+
+		OffsetDateTime offsetDateTime;
+
+		ZonedDateTime zonedDateTime;
+
+		Date date;
+
+		@JaxieWrapper("days")
+		@JaxieElement("day")
+		List<LocalDate> days;
+	}
+
+	public static class Money
+	{
+		long cents;
+
+		Money(long cents)
+		{
+			this.cents = cents;
+		}
+	}
+
+	public static class MoneyAdapter implements Adapter<Money>
+	{
+		static final AtomicInteger INSTANCES = new AtomicInteger();
+
+		public MoneyAdapter()
+		{
+			INSTANCES.incrementAndGet();
+		}
+
+		@Override
+		public Money deserialize(String text)
+		{
+			return new Money(new BigDecimal(text).movePointRight(2).longValueExact());
+		}
+
+		@Override
+		public String serialize(Money value)
+		{
+			return BigDecimal.valueOf(value.cents, 2).toPlainString();
+		}
+	}
+
+	@JaxieElement("order")
+	public static class OrderClass
+	{
+		@JaxieAttribute
+		@JaxieAdapter(value = MoneyAdapter.class, shared = true)
+		Money total;
+
+		@JaxieAdapter(value = MoneyAdapter.class, shared = true)
+		Money discount;
+
+		Money shipping;
+
+		@JaxieWrapper("items")
+		@JaxieElement("price")
+		List<Money> prices;
+	}
+
 	public static class ByteAdapter implements Adapter<byte[]>
 	{
+		static final AtomicInteger INSTANCES = new AtomicInteger();
+
+		public ByteAdapter()
+		{
+			INSTANCES.incrementAndGet();
+		}
+
 		@Override
 		public byte[] deserialize(String text)
 		{
@@ -71,6 +271,39 @@ public class JaxieTest
 		}
 	}
 
+	@JaxieElement("binding")
+	public static class BindingClass
+	{
+		@JaxieAttribute
+		String code;
+
+		Long id;
+
+		String name;
+
+		@JaxieWrapper("name")
+		@JaxieElement("item")
+		List<String> items;
+
+		@JaxieWrapper("tags")
+		@JaxieElement("tag")
+		List<String> tags;
+
+		@JaxieElement("value")
+		List<Integer> values;
+
+		@JaxieWrapper("words")
+		@JaxieElement("word")
+		String[] words;
+
+		@JaxieElement("number")
+		int[] numbers;
+
+		@JaxieWrapper("flags")
+		@JaxieElement("flag")
+		boolean[] flags;
+	}
+
 	@Test
 	public void basicTest()
 	{
@@ -118,4 +351,1005 @@ public class JaxieTest
 			Assertions.fail(e);
 		}
 	}
+
+	@Test
+	public void bindingPlanTest()
+	{
+		BindingPlan plan = BindingPlan.of(TestClass.class);
+		Assertions.assertSame(plan, BindingPlan.of(TestClass.class));
+		Assertions.assertEquals("rootElement", plan.getRootName());
+		Assertions.assertEquals(10, plan.getFields().size());
+
+		FieldBinding children = plan.getFields().get(2);
+		Assertions.assertEquals("child", children.getName());
+		Assertions.assertEquals("children", children.getWrapper());
+		Assertions.assertEquals(TestClass.class, children.getKeyType());
+
+		FieldBinding attr = plan.getFields().get(3);
+		Assertions.assertTrue(attr.isAttribute());
+		Assertions.assertEquals("attr", attr.getName());
+
+		FieldBinding map = plan.getFields().get(7);
+		Assertions.assertEquals("sophisticatedMap", map.getName());
+		Assertions.assertEquals(Long.class, map.getKeyType());
+		Assertions.assertEquals(TestClass.class, map.getValueType());
+	}
+
+	@Test
+	public void primitiveTest()
+	{
+		Jaxie jaxie = new Jaxie();
+
+		PrimitiveClass p = new PrimitiveClass();
+		p.number = 42;
+		p.total = 1234567890123l;
+		p.ratio = 0.25;
+		p.active = true;
+		p.weight = 1.5f;
+
+		String xml = jaxie.toXml(p);
+		Assertions.assertEquals("<root no=\"42\"><total>1234567890123</total><ratio>0.25</ratio><active>true</active><weight>1.5</weight></root>", xml);
+
+		PrimitiveClass dp = jaxie.fromXml(xml, PrimitiveClass.class);
+		Assertions.assertEquals(p.number, dp.number);
+		Assertions.assertEquals(p.total, dp.total);
+		Assertions.assertEquals(p.ratio, dp.ratio);
+		Assertions.assertEquals(p.active, dp.active);
+		Assertions.assertEquals(p.weight, dp.weight);
+	}
+
+	@Test
+	public void generatedMapperTest()
+	{
+		Assertions.assertNotNull(BindingPlan.of(PlainClass.class).getMapper());
+		Assertions.assertNull(BindingPlan.of(TestClass.class).getMapper());
+
+		Jaxie jaxie = new Jaxie();
+
+		PlainClass p = new PlainClass();
+		p.code = "A1";
+		p.id = 7l;
+		p.count = 3;
+		p.tags = new ArrayList<>();
+		p.tags.add("x");
+		p.tags.add("y");
+		p.child = new PlainClass();
+		p.child.id = 8l;
+
+		String xml = jaxie.toXml(p);
+		Assertions.assertEquals("<plain code=\"A1\"><id>7</id><count>3</count><tags><tag>x</tag><tag>y</tag></tags><child><id>8</id><count>0</count></child></plain>", xml);
+
+		PlainClass dp = jaxie.fromXml(xml, PlainClass.class);
+		Assertions.assertEquals(p.code, dp.code);
+		Assertions.assertEquals(p.id, dp.id);
+		Assertions.assertEquals(p.count, dp.count);
+		Assertions.assertEquals(p.tags, dp.tags);
+		Assertions.assertEquals(p.child.id, dp.child.id);
+
+		Assertions.assertNull(JaxieMapper.find(ForeignClass.class));
+		Assertions.assertNull(BindingPlan.of(ForeignClass.class).getMapper());
+		Assertions.assertEquals(PlainClass.class, BindingPlan.of(PlainClass.class).getMapper().getMappedClass());
+
+		JaxieMapper<Object> mapper = BindingPlan.of(NumbersClass.class).getMapper();
+		Assertions.assertNotNull(mapper);
+		for (String name : Arrays.asList("Int", "Long", "Double", "Boolean"))
+		{
+			Assertions.assertTrue(Arrays.stream(mapper.getClass().getDeclaredMethods()).anyMatch(m -> m.getName().equals("get" + name) && !m.isBridge()));
+			Assertions.assertTrue(Arrays.stream(mapper.getClass().getDeclaredMethods()).anyMatch(m -> m.getName().equals("set" + name) && !m.isBridge()));
+		}
+
+		NumbersClass n = new NumbersClass();
+		n.number = 42;
+		n.total = 1234567890123l;
+		n.ratio = 0.25;
+		n.active = true;
+		n.weight = 1.5f;
+		xml = jaxie.toXml(n);
+		Assertions.assertEquals("<numbers no=\"42\"><total>1234567890123</total><ratio>0.25</ratio><active>true</active><weight>1.5</weight></numbers>", xml);
+		for (Jaxie j : Arrays.asList(jaxie, new Jaxie().withStreaming()))
+		{
+			NumbersClass dn = j.fromXml(xml, NumbersClass.class);
+			Assertions.assertEquals(n.number, dn.number);
+			Assertions.assertEquals(n.total, dn.total);
+			Assertions.assertEquals(n.ratio, dn.ratio);
+			Assertions.assertEquals(n.active, dn.active);
+			Assertions.assertEquals(n.weight, dn.weight);
+		}
+	}
+
+	@Test
+	public void streamingSerializationTest()
+	{
+		TestClass c = new TestClass();
+		c.id = 1l;
+		c.attr = "a&b";
+		c.date = new Date();
+		c.children = new ArrayList<>();
+		c.map = new HashMap<>();
+		c.value = new int[]
+		{ 1, 2 };
+
+		TestClass c1 = new TestClass();
+		c1.id = 2l;
+		c1.attr = "<boo>";
+		c1.anonymousElement = "\"quoted\"";
+		c.children.add(c1);
+		c.map.put(c1.id, c1);
+
+		for (boolean prettyPrint : new boolean[]
+		{ false, true })
+		{
+			String expected = new Jaxie().withPrettyPrint(prettyPrint).toXml(c);
+			Assertions.assertEquals(expected, new Jaxie().withPrettyPrint(prettyPrint).withStreaming().toXml(c));
+		}
+	}
+
+	@Test
+	public void streamingDeserializationTest()
+	{
+		final String xml = "<?xml version=\"1.0\"?><rootElement attr=\"top\"><!-- comment --><id>1</id><date>2024-07-18 13:15:23</date><children><child attr=\"boo\"><id>2</id><counter>22</counter><rating>SECOND</rating></child><child attr=\"boo2\"><id>3</id><unknown><id>9</id></unknown><counter>33</counter></child></children><rating>FIRST</rating><anonymousElement><![CDATA[<a>]]></anonymousElement><sophisticatedMap><entry><key>2</key><value attr=\"boo\"><id>2</id></value></entry></sophisticatedMap><values><value>1</value><value>2</value><value>3</value></values><arr>AAAAA</arr></rootElement>";
+
+		TestClass c = new Jaxie().withStreaming().fromXml(xml, TestClass.class);
+
+		Assertions.assertEquals(Long.valueOf(1), c.id);
+		Assertions.assertNotNull(c.date);
+		Assertions.assertEquals("top", c.attr);
+		Assertions.assertEquals(Rating.FIRST, c.rating);
+		Assertions.assertEquals("<a>", c.anonymousElement);
+		Assertions.assertEquals(2, c.children.size());
+		Assertions.assertEquals("boo2", c.children.get(1).attr);
+		Assertions.assertEquals(Integer.valueOf(33), c.children.get(1).counter);
+		Assertions.assertEquals(Long.valueOf(3), c.children.get(1).id);
+		Assertions.assertEquals(Long.valueOf(2), c.map.get(2l).id);
+		Assertions.assertArrayEquals(new int[]
+		{ 1, 2, 3 }, c.value);
+		Assertions.assertArrayEquals(new byte[]
+		{ 100, 50, 100 }, c.arr);
+	}
+
+	@Test
+	public void tokenizerTest()
+	{
+		final String xml = "<?xml version=\"1.0\"?>\n<a x=\"1\" y='2' z><b>text<!-- c -->more</b><c/><d><![CDATA[<e/>]]></d></a>";
+
+		StringBuilder sb = new StringBuilder();
+		try
+		{
+			XmlTokenizer tokenizer = new XmlTokenizer(xml);
+			XmlEvent event;
+			while ((event = tokenizer.next()) != XmlEvent.END_DOCUMENT)
+			{
+				sb.append(event).append(':').append(tokenizer.getName()).append(':').append(tokenizer.getValue()).append(':').append(tokenizer.getDepth()).append(';');
+			}
+		}
+		catch (Exception e)
+		{
+			Assertions.fail(e);
+		}
+		Assertions.assertEquals(
+				"START_ELEMENT:a:null:1;ATTRIBUTE:x:1:1;ATTRIBUTE:y:2:1;ATTRIBUTE:z:null:1;START_ELEMENT:b:null:2;TEXT:null:textmore:2;END_ELEMENT:b:null:1;START_ELEMENT:c:null:2;END_ELEMENT:c:null:1;START_ELEMENT:d:null:2;TEXT:null:<![CDATA[<e/>]]>:2;END_ELEMENT:d:null:1;END_ELEMENT:a:null:0;",
+				sb.toString());
+
+		XmlElement el = Deserializator.parse(xml);
+		Assertions.assertEquals("a", el.getName());
+		Assertions.assertEquals("2", el.getAttributes("y").get(0).getValue());
+		Assertions.assertEquals("textmore", el.getFirst("b").getTextContent());
+		Assertions.assertEquals("<e/>", el.getFirst("d").getTextContent());
+		Assertions.assertEquals(3, el.size());
+
+		el = Deserializator.parse("<a>x<b>1<c/>2<!-- c -->3</b>y<d/>z</a>");
+		Assertions.assertEquals("xyz", el.getTextContent());
+		Assertions.assertEquals("123", el.getFirst("b").getTextContent());
+	}
+
+	@Test
+	public void readerTest()
+	{
+		StringBuilder sb = new StringBuilder("<plain code=\"r\"><!-- ");
+		for (int i = 0; i < 10000; i++)
+		{
+			sb.append('-');
+		}
+		sb.append(" --><id>5</id><tags>");
+		for (int i = 0; i < 2000; i++)
+		{
+			sb.append("<tag>t").append(i).append("</tag>");
+		}
+		sb.append("</tags></plain>");
+		final String xml = sb.toString();
+
+		Reader reader = new StringReader(xml)
+		{
+			private boolean empty;
+
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException
+			{
+				empty = !empty;
+				return empty ? 0 : super.read(cbuf, off, Math.min(len, 7));
+			}
+		};
+
+		PlainClass p = new Jaxie().fromXml(reader, PlainClass.class);
+		Assertions.assertEquals("r", p.code);
+		Assertions.assertEquals(Long.valueOf(5), p.id);
+		Assertions.assertEquals(2000, p.tags.size());
+		Assertions.assertEquals("t1999", p.tags.get(1999));
+
+		PlainClass s = new Jaxie().withStreaming().fromXml(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), PlainClass.class);
+		Assertions.assertEquals(p.tags, s.tags);
+
+		Reader stalled = new StringReader(xml)
+		{
+			@Override
+			public int read(char[] cbuf, int off, int len)
+			{
+				return 0;
+			}
+		};
+		Assertions.assertThrows(RuntimeException.class, () -> new Jaxie().fromXml(stalled, PlainClass.class));
+	}
+
+	@Test
+	public void openStreamTest() throws Exception
+	{
+		for (String xml : Arrays.asList("<plain code=\"x\"><id>1</id></plain>", "<?xml version=\"1.0\" encoding=\"iso-8859-1\"?><plain code=\"x\"><id>1</id></plain>"))
+		{
+			for (Jaxie jaxie : Arrays.asList(new Jaxie(), new Jaxie().withStreaming()))
+			{
+				try (PipedOutputStream os = new PipedOutputStream(); PipedInputStream is = new PipedInputStream(os))
+				{
+					os.write(xml.getBytes(StandardCharsets.UTF_8));
+					os.flush();
+					PlainClass p = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(2), () -> jaxie.fromXml(is, PlainClass.class));
+					Assertions.assertEquals("x", p.code);
+					Assertions.assertEquals(Long.valueOf(1), p.id);
+				}
+				try (PipedOutputStream os = new PipedOutputStream(); PipedInputStream is = new PipedInputStream(os))
+				{
+					os.write(xml.getBytes(StandardCharsets.UTF_8));
+					os.flush();
+					PlainClass p = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(2), () -> jaxie.stream(is, "plain", PlainClass.class).iterator().next());
+					Assertions.assertEquals("x", p.code);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void bytesTest()
+	{
+		final String xml = "<rootElement attr=\"žluťoučký\"><id>7</id><unknown a=\"ě\">kůň<![CDATA[<x>]]></unknown><anonymousElement>příliš &lt;</anonymousElement></rootElement>";
+
+		try
+		{
+			TestClass c = new Jaxie().fromXml(xml.getBytes(StandardCharsets.UTF_8), TestClass.class);
+			Assertions.assertEquals("žluťoučký", c.attr);
+			Assertions.assertEquals(Long.valueOf(7), c.id);
+			Assertions.assertEquals("příliš &lt;", c.anonymousElement);
+
+			TestClass s = new Jaxie().withStreaming().fromXml(ByteBuffer.wrap(xml.getBytes(StandardCharsets.UTF_8)), TestClass.class);
+			Assertions.assertEquals("žluťoučký", s.attr);
+			Assertions.assertEquals("příliš &lt;", s.anonymousElement);
+
+			Charset latin2 = Charset.forName("ISO-8859-2");
+			byte[] bytes = ("<?xml version=\"1.0\" encoding='ISO-8859-2'?>" + xml).getBytes(latin2);
+			Assertions.assertEquals("žluťoučký", new Jaxie().fromXml(bytes, TestClass.class).attr);
+			Assertions.assertEquals("žluťoučký", new Jaxie().fromXml(new ByteArrayInputStream(bytes), TestClass.class).attr);
+
+			ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+			direct.put(bytes).flip();
+			Assertions.assertEquals("příliš &lt;", new Jaxie().fromXml(direct, TestClass.class).anonymousElement);
+
+			bytes = ("\uFEFF<?xml version=\"1.0\" encoding=\"UTF-16\"?>" + xml).getBytes(StandardCharsets.UTF_16LE);
+			Assertions.assertEquals("žluťoučký", new Jaxie().fromXml(bytes, TestClass.class).attr);
+			Assertions.assertEquals("žluťoučký", new Jaxie().fromXml(new ByteArrayInputStream(bytes), TestClass.class).attr);
+
+			XmlElement el = Deserializator.parse(("\uFEFF" + xml).getBytes(StandardCharsets.UTF_8));
+			Assertions.assertEquals("kůň<![CDATA[<x>]]>", el.getFirst("unknown").value);
+		}
+		catch (Exception e)
+		{
+			Assertions.fail(e);
+		}
+	}
+
+	@Test
+	public void mappedFileTest()
+	{
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<plain code=\"čř\"><!-- comment --><id>5</id><tags>");
+		for (int i = 0; i < 500; i++)
+		{
+			sb.append("<tag>ž").append(i).append("<![CDATA[ <> ]]></tag>");
+		}
+		sb.append("</tags></plain>");
+
+		try
+		{
+			Path path = Files.createTempFile("jaxie", ".xml");
+			try
+			{
+				Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+				PlainClass p = new Jaxie().fromXml(path, PlainClass.class);
+				Assertions.assertEquals("čř", p.code);
+				Assertions.assertEquals(500, p.tags.size());
+				Assertions.assertEquals("ž499<![CDATA[ <> ]]>", p.tags.get(499));
+				Assertions.assertEquals(p.tags, new Jaxie().withStreaming().fromXml(path, PlainClass.class).tags);
+
+				try (FileChannel channel = FileChannel.open(path))
+				{
+					XmlElement el = Deserializator.parse(new XmlTokenizer(ByteXmlLexer.of(channel, 16)));
+					Assertions.assertEquals("čř", el.getAttributes("code").get(0).getValue());
+					Assertions.assertEquals(500, el.getFirst("tags").size());
+					Assertions.assertEquals("ž123<![CDATA[ <> ]]>", el.getFirst("tags").get("tag").get(123).value);
+				}
+
+				for (int round = 0; round < 10; round++)
+				{
+					try (FileChannel channel = FileChannel.open(path))
+					{
+						XmlTokenizer tokenizer = new XmlTokenizer(channel);
+						tokenizer.setLazy(true);
+						List<XmlElement> lstTags = Deserializator.parse(tokenizer).getFirst("tags").get("tag");
+						Assertions.assertTrue(IntStream.range(0, 4000).parallel().allMatch(i -> ("ž" + (i % 500) + "<![CDATA[ <> ]]>").equals(lstTags.get(i % 500).getValue())));
+					}
+				}
+			}
+			finally
+			{
+				Files.delete(path);
+			}
+		}
+		catch (Exception e)
+		{
+			Assertions.fail(e);
+		}
+	}
+
+	@Test
+	public void lazyTest()
+	{
+		final String xml = "<a x=\"1\" y='ě'><b>text<!-- c -->more</b><c>č</c><d><![CDATA[<e/>]]></d>tail</a>";
+
+		try
+		{
+			for (XmlElement el : Arrays.asList(Deserializator.parseLazy(xml), Deserializator.parseLazy(xml.getBytes(StandardCharsets.UTF_8))))
+			{
+				Assertions.assertNotNull(el.getFirst("c").lazyValue);
+				Assertions.assertEquals("č", el.getFirst("c").getTextContent());
+				Assertions.assertNull(el.getFirst("c").lazyValue);
+				Assertions.assertEquals("ě", el.getAttributes("y").get(0).getValue());
+				Assertions.assertEquals("textmore", el.getFirst("b").getTextContent());
+				Assertions.assertEquals("<e/>", el.getFirst("d").getTextContent());
+				Assertions.assertEquals("tail", el.getTextContent());
+				Assertions.assertEquals(Serializator.serialize(Deserializator.parse(xml), 0, new Config()), Serializator.serialize(el, 0, new Config()));
+			}
+		}
+		catch (Exception e)
+		{
+			Assertions.fail(e);
+		}
+	}
+
+	@Test
+	public void symbolTest()
+	{
+		try
+		{
+			for (XmlTokenizer tokenizer : Arrays.asList(new XmlTokenizer("<plain><tags><tag>a</tag><tag>b</tag></tags></plain>"),
+					new XmlTokenizer("<plain><tags><tag>a</tag><tag>b</tag></tags></plain>".getBytes(StandardCharsets.UTF_8))))
+			{
+				List<String> lstNames = new ArrayList<>();
+				while (tokenizer.next() != XmlEvent.END_DOCUMENT)
+				{
+					if (tokenizer.getEvent() == XmlEvent.START_ELEMENT)
+					{
+						lstNames.add(tokenizer.getName());
+					}
+				}
+				Assertions.assertSame("plain", lstNames.get(0));
+				Assertions.assertSame(lstNames.get(2), lstNames.get(3));
+				Assertions.assertSame(BindingPlan.of(PlainClass.class).getElements().get(2).getName(), lstNames.get(2));
+			}
+		}
+		catch (Exception e)
+		{
+			Assertions.fail(e);
+		}
+	}
+
+	@Test
+	public void elementIndexTest() throws Exception
+	{
+		XmlElement el = XmlElement.create("wide").addAttribute("a", "1");
+		for (int i = 0; i < 300; i++)
+		{
+			el.add("field" + (i % 150), String.valueOf(i));
+		}
+
+		Assertions.assertEquals(2, el.get("field7").size());
+		Assertions.assertEquals("157", el.get("field7").get(1).getTextContent());
+		Assertions.assertEquals("149", el.getFirst("field149").getTextContent());
+		Assertions.assertTrue(el.get("missing").isEmpty());
+		Assertions.assertNull(el.getFirst("missing"));
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> el.get("field1").clear());
+
+		el.add("field7", "300").addAttribute("a", "2");
+		Assertions.assertEquals("300", el.get("field7").get(2).getTextContent());
+		Assertions.assertEquals("2", el.getAttributes("a").get(1).getValue());
+
+		XmlElement empty = XmlElement.create("empty");
+		Assertions.assertTrue(empty.get("a").isEmpty());
+		Assertions.assertTrue(empty.getAttributes("a").isEmpty());
+
+		XmlElement parsed = Deserializator.parse(Serializator.serialize(el, 0, new Config()));
+		Assertions.assertTrue(IntStream.range(0, 3000).parallel().allMatch(i -> parsed.get("field" + (i % 150)).size() == (i % 150 == 7 ? 3 : 2) && parsed.getAttributes("a").size() == 2));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void depthTest()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+		{
+			sb.append("<a>");
+		}
+		Assertions.assertNull(Deserializator.parse(sb.toString()));
+		Assertions.assertThrows(RuntimeException.class, () -> new Jaxie().fromXml(sb.toString(), PlainClass.class));
+		Assertions.assertThrows(RuntimeException.class, () -> new Jaxie().withStreaming().fromXml(sb.toString(), PlainClass.class));
+
+		PlainClass root = new PlainClass();
+		PlainClass current = root;
+		for (int i = 0; i < 1000; i++)
+		{
+			current.child = new PlainClass();
+			current.count = i;
+			current = current.child;
+		}
+		Assertions.assertThrows(RuntimeException.class, () -> new Jaxie().toXml(root));
+
+		Jaxie jaxie = new Jaxie().withMaxDepth(2000);
+		String xml = jaxie.toXml(root);
+		Assertions.assertEquals(xml, jaxie.withStreaming().toXml(root));
+		PlainClass result = jaxie.fromXml(xml, PlainClass.class);
+		Assertions.assertEquals(3, result.child.child.child.count);
+
+		try
+		{
+			Config config = new Config();
+			config.setMaxDepth(2000);
+			XmlTokenizer tokenizer = new XmlTokenizer(xml);
+			tokenizer.setMaxDepth(2000);
+			Assertions.assertEquals(xml, Serializator.serialize(Deserializator.parse(tokenizer), 0, config));
+		}
+		catch (Exception e)
+		{
+			Assertions.fail(e);
+		}
+
+		current.child = root;
+		Assertions.assertThrows(RuntimeException.class, () -> new Jaxie().toXml(root));
+		Assertions.assertThrows(RuntimeException.class, () -> new Jaxie().withStreaming().toXml(root));
+
+		TestClass cyclic = new TestClass();
+		cyclic.children = new ArrayList<>();
+		((List<Object>) (List<?>) cyclic.children).add(cyclic.children);
+		for (Jaxie j : Arrays.asList(new Jaxie(), new Jaxie().withParallel(1), new Jaxie().withParallel(1).withStreaming()))
+		{
+			RuntimeException e = Assertions.assertThrows(RuntimeException.class, () -> j.toXml(cyclic));
+			Assertions.assertTrue(e.getMessage().contains("Maximal depth"));
+		}
+	}
+
+	@Test
+	public void recordStreamTest()
+	{
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><catalog><info><plain code=\"x\"/></info><items>");
+		for (int i = 0; i < 1000; i++)
+		{
+			sb.append("<plain code=\"c").append(i).append("\"><count>").append(i).append("</count><tags><tag>t").append(i).append("</tag></tags></plain>");
+		}
+		sb.append("</items></catalog>");
+		byte[] xml = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+		for (Jaxie jaxie : Arrays.asList(new Jaxie(), new Jaxie().withStreaming()))
+		{
+			List<PlainClass> lstRecords = new ArrayList<>();
+			jaxie.stream(new ByteArrayInputStream(xml), "plain", PlainClass.class).forEach(lstRecords::add);
+
+			Assertions.assertEquals(1001, lstRecords.size());
+			Assertions.assertEquals("x", lstRecords.get(0).code);
+			Assertions.assertEquals("c500", lstRecords.get(501).code);
+			Assertions.assertEquals(500, lstRecords.get(501).count);
+			Assertions.assertEquals(Arrays.asList("t999"), lstRecords.get(1000).tags);
+			Assertions.assertEquals(0, jaxie.stream(new ByteArrayInputStream(xml), "missing", PlainClass.class).count());
+
+			AtomicInteger closed = new AtomicInteger();
+			InputStream is = new ByteArrayInputStream("<r><n>1</n><n/><n>3</n></r>".getBytes(StandardCharsets.UTF_8))
+			{
+				@Override
+				public void close()
+				{
+					closed.incrementAndGet();
+				}
+			};
+			try (Stream<Integer> numbers = jaxie.stream(is, "n", Integer.class))
+			{
+				Assertions.assertThrows(RuntimeException.class, () -> numbers.collect(Collectors.toList()));
+			}
+			Assertions.assertEquals(1, closed.get());
+		}
+	}
+
+	@Test
+	public void parallelTest()
+	{
+		PlainClass root = new PlainClass();
+		root.tags = new ArrayList<>();
+		for (int i = 0; i < 5000; i++)
+		{
+			root.tags.add("tag" + i);
+		}
+		TestClass test = new TestClass();
+		test.date = new Date(0);
+		test.children = new ArrayList<>();
+		for (int i = 0; i < 3000; i++)
+		{
+			TestClass child = new TestClass();
+			child.id = (long) i;
+			child.date = new Date(i * 1000L);
+			test.children.add(child);
+		}
+
+		String xml = new Jaxie().toXml(root);
+		String testXml = new Jaxie().toXml(test);
+		Jaxie jaxie = new Jaxie().withParallel(100);
+		Assertions.assertEquals(root.tags, jaxie.fromXml(xml, PlainClass.class).tags);
+		Assertions.assertEquals(testXml, jaxie.toXml(jaxie.fromXml(testXml, TestClass.class)));
+
+		String broken = testXml.replace("<id>2999</id>", "<id>x</id>");
+		Assertions.assertThrows(RuntimeException.class, () -> jaxie.fromXml(broken, TestClass.class));
+	}
+
+	@Test
+	public void parallelParsingTest()
+	{
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- <plain> -->\n<catalog version=\"1\">\n");
+		for (int i = 0; i < 8000; i++)
+		{
+			sb.append("\t<plain code=\"c").append(i).append("\"><count>").append(i).append("</count><tags><tag>t").append(i).append("</tag></tags>");
+			sb.append(i % 100 == 0 ? "<child><count>1</count></child><!-- <plain> --><![CDATA[<plain>]]>" : "").append("</plain>\n");
+		}
+		sb.append("</catalog>\n");
+		String xml = sb.toString();
+
+		StringBuilder sbBroken = new StringBuilder("<catalog><plain><![CDATA[");
+		for (int i = 0; i < 8000; i++)
+		{
+			sbBroken.append("<plain>").append(i).append("</plain>");
+		}
+		String broken = sbBroken.append("]]></plain></catalog>").toString();
+
+		try
+		{
+			Config config = new Config();
+			String expected = Serializator.serialize(Deserializator.parse(xml), 0, config);
+			Assertions.assertNotNull(ParallelParser.of(xml).parseParallel(config));
+			Assertions.assertEquals(expected, Serializator.serialize(ParallelParser.of(xml).parseParallel(config), 0, config));
+			Assertions.assertEquals(expected, Serializator.serialize(Deserializator.parseParallel(xml.getBytes(StandardCharsets.UTF_8)), 0, config));
+
+			Assertions.assertNull(ParallelParser.of(broken).parseParallel(config));
+			Assertions.assertEquals(Serializator.serialize(Deserializator.parse(broken), 0, config), Serializator.serialize(Deserializator.parseParallel(broken), 0, config));
+		}
+		catch (Exception e)
+		{
+			Assertions.fail(e);
+		}
+
+		String plainXml = xml.replace("<plain code", "<child code").replace("</plain>\n", "</child>\n").replace("catalog", "plain");
+		PlainClass result = new Jaxie().withParallelParsing().fromXml(plainXml.getBytes(StandardCharsets.UTF_8), PlainClass.class);
+		Assertions.assertEquals(7999, result.child.count);
+		Assertions.assertEquals(new Jaxie().toXml(new Jaxie().fromXml(plainXml, PlainClass.class)), new Jaxie().toXml(result));
+	}
+
+	@Test
+	public void parallelSerializationTest()
+	{
+		TestClass test = new TestClass();
+		test.children = new ArrayList<>();
+		test.map = new HashMap<>();
+		for (int i = 0; i < 3000; i++)
+		{
+			TestClass child = new TestClass();
+			child.id = (long) i;
+			child.attr = i % 2 == 0 ? "<a&b>" : null;
+			child.value = new int[] { i, i + 1 };
+			test.children.add(i % 500 == 0 ? null : child);
+			test.map.put((long) i, child);
+		}
+		test.value = new int[5000];
+
+		for (Jaxie jaxie : Arrays.asList(new Jaxie(), new Jaxie().withPrettyPrint(), new Jaxie().withStreaming(), new Jaxie().withPrettyPrint().withStreaming()))
+		{
+			String expected = jaxie.toXml(test);
+			Assertions.assertEquals(expected, jaxie.withParallel(100).toXml(test));
+			Assertions.assertEquals(expected, jaxie.withParallel(1).toXml(test));
+		}
+	}
+
+	@Test
+	public void xmlWriterTest()
+	{
+		PlainClass plain = new PlainClass();
+		plain.code = "c";
+		plain.id = 1L;
+		plain.tags = Arrays.asList("a", "b");
+
+		try
+		{
+			StringWriter sw = new StringWriter();
+			try (XmlWriter w = new Jaxie().createWriter(sw))
+			{
+				w.writeXmlInfo();
+				w.startElement("report");
+				w.attribute("date", "<now>");
+				w.startElement("title");
+				w.text("a < b");
+				w.cdata("]]>");
+				w.endElement();
+				for (int i = 0; i < 3; i++)
+				{
+					w.writeObject(plain);
+				}
+				w.writeObject(Arrays.asList(1, 2), "number");
+				Assertions.assertThrows(IllegalStateException.class, () -> w.attribute("late", "1"));
+			}
+			String xmlPlain = new Jaxie().toXml(plain);
+			Assertions.assertEquals("<?xml version=\"1.0\" encoding=\"utf-8\"?><report date=\"&lt;now&gt;\"><title>a &lt; b<![CDATA[]]]]><![CDATA[>]]></title>" + xmlPlain + xmlPlain
+					+ xmlPlain + "<number>1</number><number>2</number></report>", sw.toString());
+
+			sw = new StringWriter();
+			try (XmlWriter w = new Jaxie().withPrettyPrint().createWriter(sw))
+			{
+				w.startElement("rows");
+				w.writeObject(plain, "row");
+			}
+			Assertions.assertEquals(new Jaxie().withPrettyPrint().toXml(plain).replace("plain", "row").replace("\n", "\n\t"), sw.toString().replace("<rows>\n\t", "").replace("\n</rows>", ""));
+		}
+		catch (IOException e)
+		{
+			Assertions.fail(e);
+		}
+	}
+
+	@Test
+	public void lazyCollectionTest()
+	{
+		AtomicInteger pulled = new AtomicInteger();
+		AtomicInteger closed = new AtomicInteger();
+		CursorClass cursor = new CursorClass();
+		cursor.names = IntStream.range(0, 1000).peek(i -> pulled.incrementAndGet()).mapToObj(i -> "n" + i).iterator();
+		cursor.number = Stream.of(1, 2, 3).onClose(closed::incrementAndGet);
+		cursor.row = () -> Arrays.asList("a", "b").iterator();
+
+		StringWriter sw = new StringWriter();
+		try (XmlWriter w = new Jaxie().createWriter(sw))
+		{
+			w.startElement("export");
+			w.writeObject(cursor);
+			Assertions.assertEquals(1000, pulled.get());
+			Assertions.assertEquals(1, closed.get());
+		}
+		catch (IOException e)
+		{
+			Assertions.fail(e);
+		}
+
+		String xml = sw.toString();
+		Assertions.assertTrue(xml.startsWith("<export><cursor><names><name>n0</name><name>n1</name>"));
+		Assertions.assertTrue(xml.endsWith("<name>n999</name></names><number>1</number><number>2</number><number>3</number><row>a</row><row>b</row></cursor></export>"));
+
+		cursor.names = Arrays.asList("x").iterator();
+		cursor.number = Stream.of(4);
+		Assertions.assertEquals("<cursor><names><name>x</name></names><number>4</number><row>a</row><row>b</row></cursor>", new Jaxie().toXml(cursor));
+
+		for (Jaxie jaxie : Arrays.asList(new Jaxie(), new Jaxie().withStreaming()))
+		{
+			cursor.number = Stream.of(5, 6).peek(i -> {
+				if (i == 6)
+				{
+					throw new IllegalStateException("broken");
+				}
+			}).onClose(closed::incrementAndGet);
+			Assertions.assertThrows(RuntimeException.class, () -> jaxie.toXml(cursor));
+		}
+		Assertions.assertEquals(3, closed.get());
+	}
+
+	@Test
+	public void charsetTest()
+	{
+		PlainClass plain = new PlainClass();
+		plain.code = "\u010d\u00e9";
+		plain.id = 7l;
+		plain.tags = Arrays.asList("\u017elu\u0165ou\u010dk\u00fd", "k\u016f\u0148 \uD83D\uDE00", "ascii");
+
+		Jaxie jaxie = new Jaxie();
+		String xml = jaxie.toXml(plain);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		jaxie.toXml(plain, os);
+		Assertions.assertArrayEquals(xml.getBytes(StandardCharsets.UTF_8), os.toByteArray());
+
+		for (Charset charset : Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.UTF_16LE, StandardCharsets.UTF_16))
+		{
+			for (boolean streaming : new boolean[] { false, true })
+			{
+				Jaxie j = new Jaxie().withCharset(charset).withStreaming(streaming);
+				os = new ByteArrayOutputStream();
+				j.toXml(plain, os);
+				PlainClass result = j.fromXml(os.toByteArray(), PlainClass.class);
+				Assertions.assertEquals(plain.code, result.code);
+				Assertions.assertEquals(plain.tags, result.tags);
+			}
+		}
+
+		os = new ByteArrayOutputStream();
+		new Jaxie().withCharset(StandardCharsets.ISO_8859_1).toXml(plain, os);
+		xml = new String(os.toByteArray(), StandardCharsets.ISO_8859_1);
+		Assertions.assertTrue(xml.contains("code=\"&#269;\u00e9\""));
+		Assertions.assertTrue(xml.contains("<tag>k&#367;&#328; &#128512;</tag>"));
+
+		os = new ByteArrayOutputStream();
+		new Jaxie().withCharset(Charset.forName("windows-1250")).withStreaming().toXml(plain, os);
+		xml = new String(os.toByteArray(), Charset.forName("windows-1250"));
+		Assertions.assertTrue(xml.contains("<tag>\u017elu\u0165ou\u010dk\u00fd</tag><tag>k\u016f\u0148 &#128512;</tag>"));
+
+		PlainClass latin = new PlainClass();
+		latin.code = "caf\u00e9";
+		latin.tags = Arrays.asList("\u00fa\u010d\u0165", "<![CDATA[\u00e9<]]>");
+		for (Charset charset : Arrays.asList(StandardCharsets.ISO_8859_1, Charset.forName("windows-1250")))
+		{
+			for (boolean streaming : new boolean[] { false, true })
+			{
+				Jaxie j = new Jaxie().withCharset(charset).withStreaming(streaming);
+				os = new ByteArrayOutputStream();
+				j.toXml(latin, os);
+				Assertions.assertTrue(new String(os.toByteArray(), charset).startsWith("<?xml version=\"1.0\" encoding=\"" + charset.name().toLowerCase() + "\"?><plain"));
+				PlainClass result = new Jaxie().withStreaming(streaming).fromXml(os.toByteArray(), PlainClass.class);
+				Assertions.assertEquals(latin.code, result.code);
+				Assertions.assertEquals(charset.equals(StandardCharsets.ISO_8859_1) ? "\u00fa&#269;&#357;" : latin.tags.get(0), result.tags.get(0));
+				Assertions.assertEquals("\u00e9<", result.tags.get(1));
+
+				PlainClass cdata = new PlainClass();
+				cdata.tags = Arrays.asList("<![CDATA[\u010d\u0416<]]>");
+				Assertions.assertThrows(RuntimeException.class, () -> j.toXml(cdata, new ByteArrayOutputStream()));
+			}
+		}
+
+		os = new ByteArrayOutputStream();
+		try (XmlWriter w = new Jaxie().withCharset(StandardCharsets.ISO_8859_1).createWriter(os))
+		{
+			w.writeXmlInfo();
+			w.startElement("caf\u00e9");
+			Assertions.assertThrows(IOException.class, () -> w.startElement("\u010d"));
+			Assertions.assertThrows(IOException.class, () -> w.attribute("\u010d", "x"));
+			w.cdata("\u00e9");
+		}
+		catch (IOException e)
+		{
+			Assertions.fail(e);
+		}
+		Assertions.assertEquals("<?xml version=\"1.0\" encoding=\"iso-8859-1\"?><caf\u00e9><![CDATA[\u00e9]]></caf\u00e9>", new String(os.toByteArray(), StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void escapeTest() throws IOException
+	{
+		String clean = "plain text without special characters";
+		Assertions.assertSame(clean, CommonUtils.normalizeText(clean));
+		Assertions.assertEquals("&lt;a href=&quot;x&quot;&gt;Tom &amp; Jerry&apos;s&lt;/a&gt;", CommonUtils.normalizeText("<a href=\"x\">Tom & Jerry's</a>"));
+
+		StringWriter sw = new StringWriter();
+		try (XmlWriter w = new Jaxie().createWriter(sw))
+		{
+			w.startElement("root");
+			w.attribute("a", "1 < 2 & \"3\"");
+			w.startElement("text");
+			w.text("x > y");
+			w.endElement();
+			w.startElement("mixed");
+			w.text("a&b");
+			w.cdata("<c>");
+			w.text("d<");
+			w.endElement();
+			w.startElement("cdata");
+			w.text("<![CDATA[<raw>]]>");
+		}
+		Assertions.assertEquals("<root a=\"1 &lt; 2 &amp; &quot;3&quot;\"><text>x &gt; y</text><mixed>a&amp;b<![CDATA[<c>]]>d&lt;</mixed><cdata><![CDATA[<raw>]]></cdata></root>", sw.toString());
+	}
+
+	@Test
+	public void sharedJaxieTest() throws Exception
+	{
+		Jaxie jaxie = new Jaxie();
+		Assertions.assertSame(jaxie, jaxie.withPrettyPrint());
+		Assertions.assertTrue(jaxie.getConfig().isPrettyPrint());
+
+		Jaxie.Builder builder = Jaxie.builder().withPrettyPrint();
+		Jaxie pretty = builder.build();
+		builder.withPrettyPrint(false);
+		Assertions.assertTrue(pretty.getConfig().isPrettyPrint());
+		Assertions.assertFalse(builder.build().getConfig().isPrettyPrint());
+		Assertions.assertThrows(IllegalStateException.class, () -> pretty.withStreaming());
+
+		SimpleDateFormat format = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSS");
+		Jaxie shared = Jaxie.builder().withCustomDateFormat(format).build();
+		format.applyPattern("yyyy");
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try
+		{
+			List<Future<Boolean>> lstFutures = new ArrayList<>();
+			for (int t = 0; t < 8; t++)
+			{
+				final long seed = t;
+				lstFutures.add(executor.submit(() -> {
+					for (int i = 0; i < 500; i++)
+					{
+						TestClass c = new TestClass();
+						c.id = seed * 1000 + i;
+						c.date = new Date(seed * 86400000L + i * 1001L);
+						String xml = shared.toXml(c);
+						TestClass result = shared.fromXml(xml, TestClass.class);
+						if (!c.date.equals(result.date) || !c.id.equals(result.id))
+						{
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> future : lstFutures)
+			{
+				Assertions.assertTrue(future.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void timeTest() throws Exception
+	{
+		TimeClass time = new TimeClass();
+		time.instant = Instant.parse("2024-07-18T13:15:23.120Z");
+		time.localDate = LocalDate.of(2024, 7, 18);
+		time.localDateTime = LocalDateTime.of(2024, 7, 18, 13, 15);
+		time.offsetDateTime = OffsetDateTime.of(time.localDateTime, ZoneOffset.ofHours(2));
+		time.zonedDateTime = ZonedDateTime.of(time.localDateTime, ZoneId.of("Europe/Prague"));
+		time.date = new Date(1721308523000l);
+		time.days = Arrays.asList(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+		String xml = new Jaxie().toXml(time);
+		Assertions.assertTrue(xml.contains("instant=\"2024-07-18T13:15:23.120Z\""));
+		Assertions.assertTrue(xml.contains("<localDateTime>2024-07-18T13:15:00</localDateTime>"));
+		Assertions.assertTrue(xml.contains("<zonedDateTime>2024-07-18T13:15:00+02:00[Europe/Prague]</zonedDateTime>"));
+		Assertions.assertTrue(xml.contains("<date>" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(time.date) + "</date>"));
+
+		for (Jaxie jaxie : Arrays.asList(new Jaxie(), new Jaxie().withStreaming()))
+		{
+			TimeClass result = jaxie.fromXml(xml, TimeClass.class);
+			Assertions.assertEquals(time.instant, result.instant);
+			Assertions.assertEquals(time.localDate, result.localDate);
+			Assertions.assertEquals(time.localDateTime, result.localDateTime);
+			Assertions.assertEquals(time.offsetDateTime, result.offsetDateTime);
+			Assertions.assertEquals(time.zonedDateTime, result.zonedDateTime);
+			Assertions.assertEquals(time.date, result.date);
+			Assertions.assertEquals(time.days, result.days);
+		}
+
+		time.date = new java.sql.Timestamp(1721308523000l);
+		for (Jaxie jaxie : Arrays.asList(new Jaxie(), new Jaxie().withStreaming()))
+		{
+			Assertions.assertEquals(xml, jaxie.toXml(time));
+		}
+		Assertions.assertEquals(time.date, DateCodec.parse(DateCodec.format(time.date, new Config()), java.sql.Timestamp.class, new Config()));
+
+		TimeClass lenient = new Jaxie().fromXml("<times><date>2024-7-8 1:02:03</date></times>", TimeClass.class);
+		Assertions.assertEquals(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(lenient.date), "2024-07-08 01:02:03");
+	}
+
+	@Test
+	public void adapterTest()
+	{
+		Jaxie.Builder builder = Jaxie.builder().withAdapter(Money.class, new Adapter<Money>()
+		{
+			@Override
+			public Money deserialize(String text)
+			{
+				return new Money(Long.parseLong(text.substring(1)));
+			}
+
+			@Override
+			public String serialize(Money value)
+			{
+				return "$" + value.cents;
+			}
+		});
+		Jaxie jaxie = builder.build();
+
+		OrderClass order = new OrderClass();
+		order.total = new Money(12345);
+		order.discount = new Money(-500);
+		order.shipping = new Money(990);
+		order.prices = Arrays.asList(new Money(100), new Money(200));
+
+		String xml = jaxie.toXml(order);
+		Assertions.assertEquals("<order total=\"123.45\"><discount>-5.00</discount><shipping>$990</shipping><items><price>$100</price><price>$200</price></items></order>", xml);
+
+		int instances = MoneyAdapter.INSTANCES.get();
+		for (Jaxie j : Arrays.asList(jaxie, builder.withStreaming().build()))
+		{
+			for (int i = 0; i < 100; i++)
+			{
+				OrderClass result = j.fromXml(j.toXml(order), OrderClass.class);
+				Assertions.assertEquals(12345, result.total.cents);
+				Assertions.assertEquals(-500, result.discount.cents);
+				Assertions.assertEquals(990, result.shipping.cents);
+				Assertions.assertEquals(200, result.prices.get(1).cents);
+			}
+		}
+		Assertions.assertTrue(MoneyAdapter.INSTANCES.get() - instances <= 1);
+
+		int bytes = ByteAdapter.INSTANCES.get();
+		new Jaxie().toXml(new TestClass());
+		TestClass c = new TestClass();
+		c.arr = new byte[1];
+		new Jaxie().toXml(c);
+		new Jaxie().toXml(c);
+		Assertions.assertEquals(bytes + 2, ByteAdapter.INSTANCES.get());
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new Jaxie().withAdapter(List.class, null));
+		Assertions.assertTrue(new Jaxie().toXml(order).contains("<shipping><cents>990</cents></shipping>"));
+	}
+
+	@Test
+	public void bindingTest()
+	{
+		final String xml = "<binding code=\"a\" code=\"b\"><id>1</id><id>2</id><name>n1<item>x</item></name><name>n2<item>y</item><item>z</item></name><tags><tag>a</tag><tag>b</tag></tags><tags><tag>c</tag></tags><value>1</value><word>no</word><value>2</value><words><word>w1</word></words><words><word>w2</word><word>w3</word></words><number>3</number><number>4</number><flags><flag>true</flag></flags><flags><flag>false</flag><flag>true</flag></flags></binding>";
+		final String xml2 = "<binding code=\"x\"><tag>u</tag><item>i</item><values><value>5</value></values><number>7</number><tags><tag>a</tag></tags><tags/><name>plain</name></binding>";
+
+		for (Jaxie jaxie : Arrays.asList(new Jaxie(), new Jaxie().withStreaming()))
+		{
+			BindingClass b = jaxie.fromXml(xml, BindingClass.class);
+			Assertions.assertEquals("b", b.code);
+			Assertions.assertEquals(Long.valueOf(2), b.id);
+			Assertions.assertEquals("n2", b.name);
+			Assertions.assertEquals(Arrays.asList("y", "z"), b.items);
+			Assertions.assertEquals(Arrays.asList("c"), b.tags);
+			Assertions.assertEquals(Arrays.asList(1, 2), b.values);
+			Assertions.assertArrayEquals(new String[]
+			{ "w2", "w3" }, b.words);
+			Assertions.assertArrayEquals(new int[]
+			{ 3, 4 }, b.numbers);
+			Assertions.assertArrayEquals(new boolean[]
+			{ false, true }, b.flags);
+
+			b = jaxie.fromXml(xml2, BindingClass.class);
+			Assertions.assertEquals("x", b.code);
+			Assertions.assertNull(b.id);
+			Assertions.assertEquals("plain", b.name);
+			Assertions.assertNull(b.items);
+			Assertions.assertNull(b.tags);
+			Assertions.assertNull(b.values);
+			Assertions.assertNull(b.words);
+			Assertions.assertArrayEquals(new int[]
+			{ 7 }, b.numbers);
+			Assertions.assertNull(b.flags);
+		}
+	}
 }